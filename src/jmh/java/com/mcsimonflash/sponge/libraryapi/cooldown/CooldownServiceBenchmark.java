@@ -0,0 +1,84 @@
+package com.mcsimonflash.sponge.libraryapi.cooldown;
+
+import com.mcsimonflash.sponge.libraryapi.configurate.ConfigHolder;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link CooldownService#tryAcquire(long, Object...)} with the
+ * pattern it replaces, {@link CooldownService#isFinished(long, Object...)}
+ * followed by {@link CooldownService#resetCooldown(Object...)}, on a
+ * single thread and with several threads contending for the same path.
+ *
+ * A cooldown of 0 is acquired by every call, while a long cooldown is never
+ * finished, so only the check is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CooldownServiceBenchmark {
+
+    @Param({"0", "3600000"})
+    public long cooldown;
+
+    private Path file;
+    private CooldownService service;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("cooldowns", ".conf");
+        service = new CooldownService(new ConfigHolder<>(HoconConfigurationLoader.builder().setPath(file).build()));
+        service.resetCooldown("player", "action");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public boolean checkThenReset() {
+        if (service.isFinished(cooldown, "player", "action")) {
+            return service.resetCooldown("player", "action");
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean tryAcquire() {
+        return service.tryAcquire(cooldown, "player", "action") == 0;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean checkThenResetContended() {
+        return checkThenReset();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean tryAcquireContended() {
+        return tryAcquire();
+    }
+
+}
@@ -0,0 +1,242 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.Logger;
+import org.slf4j.helpers.MarkerIgnoringBase;
+import org.slf4j.helpers.MessageFormatter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overhead of {@link LoggerService} over the slf4j
+ * {@link Logger} it wraps, for calls at a disabled level (debug) and at an
+ * enabled level (info). The wrapped logger formats the messages of enabled
+ * levels as a real logger would and keeps the last one, and the service has
+ * no log files, so the difference between each pair is the cost added by the
+ * service itself.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LoggerServiceBenchmark {
+
+    private CountingLogger raw;
+    private LoggerService service;
+    private Integer value;
+
+    @Setup
+    public void setup() {
+        raw = new CountingLogger();
+        service = new LoggerService(raw);
+        value = 42;
+    }
+
+    @Benchmark
+    public void rawDisabled() {
+        raw.debug("Value is {}", value);
+    }
+
+    @Benchmark
+    public void serviceDisabled() {
+        service.debug("Value is {}", value);
+    }
+
+    @Benchmark
+    public void rawEnabled() {
+        raw.info("Value is {}", value);
+    }
+
+    @Benchmark
+    public void serviceEnabled() {
+        service.info("Value is {}", value);
+    }
+
+    @Benchmark
+    public void rawEnabledPlain() {
+        raw.info("Value changed");
+    }
+
+    @Benchmark
+    public void serviceEnabledPlain() {
+        service.info("Value changed");
+    }
+
+    /**
+     * A logger with trace and debug disabled which only counts calls to those
+     * levels, and formats and keeps the messages of the other levels.
+     */
+    private static final class CountingLogger extends MarkerIgnoringBase {
+
+        private long count;
+        private String last;
+
+        private void record(String msg) {
+            last = msg;
+            count++;
+        }
+
+        @Override
+        public boolean isTraceEnabled() {
+            return false;
+        }
+
+        @Override
+        public void trace(String msg) {
+            count++;
+        }
+
+        @Override
+        public void trace(String format, Object arg) {
+            count++;
+        }
+
+        @Override
+        public void trace(String format, Object arg1, Object arg2) {
+            count++;
+        }
+
+        @Override
+        public void trace(String format, Object... arguments) {
+            count++;
+        }
+
+        @Override
+        public void trace(String msg, Throwable t) {
+            count++;
+        }
+
+        @Override
+        public boolean isDebugEnabled() {
+            return false;
+        }
+
+        @Override
+        public void debug(String msg) {
+            count++;
+        }
+
+        @Override
+        public void debug(String format, Object arg) {
+            count++;
+        }
+
+        @Override
+        public void debug(String format, Object arg1, Object arg2) {
+            count++;
+        }
+
+        @Override
+        public void debug(String format, Object... arguments) {
+            count++;
+        }
+
+        @Override
+        public void debug(String msg, Throwable t) {
+            count++;
+        }
+
+        @Override
+        public boolean isInfoEnabled() {
+            return true;
+        }
+
+        @Override
+        public void info(String msg) {
+            record(msg);
+        }
+
+        @Override
+        public void info(String format, Object arg) {
+            record(MessageFormatter.format(format, arg).getMessage());
+        }
+
+        @Override
+        public void info(String format, Object arg1, Object arg2) {
+            record(MessageFormatter.format(format, arg1, arg2).getMessage());
+        }
+
+        @Override
+        public void info(String format, Object... arguments) {
+            record(MessageFormatter.arrayFormat(format, arguments).getMessage());
+        }
+
+        @Override
+        public void info(String msg, Throwable t) {
+            record(msg);
+        }
+
+        @Override
+        public boolean isWarnEnabled() {
+            return true;
+        }
+
+        @Override
+        public void warn(String msg) {
+            record(msg);
+        }
+
+        @Override
+        public void warn(String format, Object arg) {
+            record(MessageFormatter.format(format, arg).getMessage());
+        }
+
+        @Override
+        public void warn(String format, Object arg1, Object arg2) {
+            record(MessageFormatter.format(format, arg1, arg2).getMessage());
+        }
+
+        @Override
+        public void warn(String format, Object... arguments) {
+            record(MessageFormatter.arrayFormat(format, arguments).getMessage());
+        }
+
+        @Override
+        public void warn(String msg, Throwable t) {
+            record(msg);
+        }
+
+        @Override
+        public boolean isErrorEnabled() {
+            return true;
+        }
+
+        @Override
+        public void error(String msg) {
+            record(msg);
+        }
+
+        @Override
+        public void error(String format, Object arg) {
+            record(MessageFormatter.format(format, arg).getMessage());
+        }
+
+        @Override
+        public void error(String format, Object arg1, Object arg2) {
+            record(MessageFormatter.format(format, arg1, arg2).getMessage());
+        }
+
+        @Override
+        public void error(String format, Object... arguments) {
+            record(MessageFormatter.arrayFormat(format, arguments).getMessage());
+        }
+
+        @Override
+        public void error(String msg, Throwable t) {
+            record(msg);
+        }
+
+    }
+
+}
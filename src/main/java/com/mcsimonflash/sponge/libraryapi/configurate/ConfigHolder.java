@@ -2,18 +2,52 @@ package com.mcsimonflash.sponge.libraryapi.configurate;
 
 import ninja.leaping.configurate.ConfigurationNode;
 import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.scheduler.Task;
 
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 
 /**
  * Contains a {@link ConfigurationLoader} and it's root node.
  *
+ * By default, {@link #save()} writes the node on the calling thread. Once a
+ * save delay is set with {@link #setSaveDelay(Object, long, TimeUnit)}, saves
+ * are debounced instead: a save only marks the holder as dirty, and once no
+ * save has been requested for the delay, the node is copied on the server
+ * thread and the copy is written on an async thread. Every save requested
+ * before the copy shares the same future. So that frequent saves cannot put
+ * off the write forever, the copy is taken regardless once the maximum wait
+ * has passed since the first pending save.
+ *
+ * If the holder is created with a path, the node is written to a temporary
+ * file which then atomically replaces the config, so a crash during a write
+ * never leaves a partially written config.
+ *
  * @param <T> The type of node (matches the loader's {@param <NodeType>})
  */
 public class ConfigHolder<T extends ConfigurationNode> {
 
     private final ConfigurationLoader<T> loader;
+    private final Path path;
+    private final Function<Path, ConfigurationLoader<T>> loaders;
+    private final Object writeLock = new Object();
     private T node;
+    private Object plugin;
+    private long saveDelay;
+    private long maxSaveWait;
+    private long firstRequest, lastRequest;
+    private boolean listening;
+    private CompletableFuture<Boolean> pending;
+    private long snapshots, written;
+    private volatile int generation;
 
     /**
      * Creates a new instance from an existing {@link ConfigurationLoader<T>}.
@@ -22,10 +56,61 @@ public class ConfigHolder<T extends ConfigurationNode> {
      * @throws IOException if loader.load() causes an error
      */
     public ConfigHolder(ConfigurationLoader<T> loader) throws IOException {
+        this(loader, true);
+    }
+
+    /**
+     * Creates a new instance from an existing {@link ConfigurationLoader<T>},
+     * which is only loaded if requested. If not, {@link #load()} must be
+     * called before the node is accessed, such as by a
+     * {@link ParallelConfigLoader}.
+     *
+     * @param loader the configuration loader for the config file
+     * @param load whether to load the config now
+     * @throws IOException if loader.load() causes an error
+     */
+    public ConfigHolder(ConfigurationLoader<T> loader, boolean load) throws IOException {
         this.loader = loader;
-        load();
+        this.path = null;
+        this.loaders = null;
+        if (load) {
+            load();
+        }
+    }
+
+    /**
+     * Creates a new instance for the config file at the given path, which is
+     * saved through a temporary file and an atomic move.
+     *
+     * @param path the path to the config file
+     * @param loaders a function creating a loader for a path, such as
+     *     {@code p -> HoconConfigurationLoader.builder().setPath(p).build()}
+     * @throws IOException if loader.load() causes an error
+     */
+    public ConfigHolder(Path path, Function<Path, ConfigurationLoader<T>> loaders) throws IOException {
+        this(path, loaders, true);
+    }
+
+    /**
+     * Creates a new instance for the config file at the given path, which is
+     * only loaded if requested.
+     *
+     * @see #ConfigHolder(ConfigurationLoader, boolean)
+     *
+     * @param path the path to the config file
+     * @param loaders a function creating a loader for a path
+     * @param load whether to load the config now
+     * @throws IOException if loader.load() causes an error
+     */
+    public ConfigHolder(Path path, Function<Path, ConfigurationLoader<T>> loaders, boolean load) throws IOException {
+        this.loader = loaders.apply(path);
+        this.path = path;
+        this.loaders = loaders;
+        if (load) {
+            load();
+        }
     }
-    
+
     /**
      * Returns the node representing the root configuration.
      *
@@ -50,23 +135,213 @@ public class ConfigHolder<T extends ConfigurationNode> {
         return (T) node.getNode(path);
     }
 
+    /**
+     * Creates a handle to the node at the given path, which caches the node
+     * instead of walking the tree from the root on every access. Handles are
+     * meant to be created once and kept.
+     *
+     * @see ConfigPath
+     *
+     * @param path the child nodes, if any
+     * @return the handle to the path
+     */
+    public ConfigPath<T> path(Object... path) {
+        return new ConfigPath<>(this, path);
+    }
+
+    /**
+     * Returns the number of times the root node has been replaced by
+     * {@link #load()}, which invalidates the nodes cached by handles.
+     *
+     * @return the generation of the root node
+     */
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Debounces saves by the given delay, waiting at most ten times the delay
+     * after the first pending save.
+     *
+     * @see #setSaveDelay(Object, long, long, TimeUnit)
+     *
+     * @param plugin the plugin owning the save tasks
+     * @param delay the time without a save request before the node is saved
+     * @param unit the unit of the delay
+     */
+    public void setSaveDelay(Object plugin, long delay, TimeUnit unit) {
+        setSaveDelay(plugin, delay, delay * 10, unit);
+    }
+
+    /**
+     * Debounces saves by the given delay, and registers a listener writing
+     * any pending save when the server is stopping. A delay of 0 disables
+     * debouncing. The listener is only registered the first time.
+     *
+     * @param plugin the plugin owning the save tasks
+     * @param delay the time without a save request before the node is saved
+     * @param maxWait the time after the first pending save after which the
+     *     node is saved even if saves are still requested, at least the delay
+     * @param unit the unit of the delay and maximum wait
+     */
+    public synchronized void setSaveDelay(Object plugin, long delay, long maxWait, TimeUnit unit) {
+        if (!listening && delay > 0) {
+            Sponge.getEventManager().registerListener(plugin, GameStoppingServerEvent.class, event -> flush());
+            listening = true;
+        }
+        this.plugin = delay > 0 ? plugin : null;
+        this.saveDelay = unit.toMillis(delay);
+        this.maxSaveWait = Math.max(unit.toMillis(maxWait), saveDelay);
+        if (this.plugin == null) {
+            flush();
+        }
+    }
+
     /**
      * Attempts to save the {@link #node} to the {@link #loader}.
      *
-     * If {@link ConfigurationLoader#save(ConfigurationNode)}
+     * If no save delay is set, the node is written on the calling thread and
+     * the returned future is already complete. Otherwise, the save is merged
+     * with any other save requested within the delay and written later.
      *
-     * @return true if the save was successful, else false.
+     * @return a future completed with true if the save was successful, else
+     *     false.
      */
-    public boolean save() {
-        try {
-            loader.save(node);
-            return true;
-        } catch (IOException e) {
-            e.printStackTrace();
-            return false;
+    public synchronized CompletableFuture<Boolean> save() {
+        if (plugin == null) {
+            return CompletableFuture.completedFuture(write(node, ++snapshots));
+        }
+        lastRequest = System.currentTimeMillis();
+        if (pending == null) {
+            pending = new CompletableFuture<>();
+            firstRequest = lastRequest;
+            schedule(saveDelay);
         }
+        return pending;
     }
-    
+
+    /**
+     * Writes a pending save on the calling thread, if there is one.
+     *
+     * @return false if a pending save failed, else true.
+     */
+    public synchronized boolean flush() {
+        return pending == null || saveNow();
+    }
+
+    /**
+     * Writes the node on the calling thread regardless of the save delay,
+     * completing any pending save with the result.
+     *
+     * @return whether the write was successful
+     */
+    synchronized boolean saveNow() {
+        CompletableFuture<Boolean> future = pending;
+        pending = null;
+        boolean saved = write(node, ++snapshots);
+        if (future != null) {
+            future.complete(saved);
+        }
+        return saved;
+    }
+
+    /**
+     * Copies the node on the calling thread, which must be the thread
+     * modifying the node, and writes the copy on an async thread. Any save
+     * pending from {@link #save()} is merged into this one.
+     *
+     * @param plugin the plugin owning the async task
+     * @return a future completed with true if the save was successful, else
+     *     false.
+     */
+    public synchronized CompletableFuture<Boolean> saveAsync(Object plugin) {
+        CompletableFuture<Boolean> future = pending != null ? pending : new CompletableFuture<>();
+        pending = null;
+        writeAsync(plugin, future);
+        return future;
+    }
+
+    private void schedule(long delay) {
+        Task.builder()
+                .delay(delay, TimeUnit.MILLISECONDS)
+                .name("ConfigHolder save task")
+                .execute(this::snapshot)
+                .submit(plugin);
+    }
+
+    /**
+     * Run on the server thread once the delay has passed since the first
+     * pending save. If another save was requested since, this waits for the
+     * rest of the delay, but no longer than the maximum wait; otherwise, the
+     * node is copied and the copy is written on an async thread.
+     */
+    private synchronized void snapshot() {
+        if (pending == null || plugin == null) {
+            return;
+        }
+        long due = Math.min(lastRequest + saveDelay, firstRequest + maxSaveWait);
+        long remaining = due - System.currentTimeMillis();
+        if (remaining > 0) {
+            schedule(remaining);
+            return;
+        }
+        CompletableFuture<Boolean> future = pending;
+        pending = null;
+        writeAsync(plugin, future);
+    }
+
+    /**
+     * Copies the node and completes the future with the result of writing
+     * the copy on an async thread.
+     */
+    @SuppressWarnings("unchecked")
+    private void writeAsync(Object plugin, CompletableFuture<Boolean> future) {
+        T copy = (T) node.copy();
+        long snapshot = ++snapshots;
+        Task.builder()
+                .async()
+                .name("ConfigHolder async save task")
+                .execute(() -> future.complete(write(copy, snapshot)))
+                .submit(plugin);
+    }
+
+    /**
+     * Writes the node, through a temporary file if this holder has a path.
+     * Writes are serialized, and a copy older than the last successfully
+     * written one is skipped, so an older copy never replaces a newer one. A
+     * failed write does not count as written, so an older copy may still be
+     * written after it.
+     *
+     * @param node the node to write
+     * @param snapshot the number of the snapshot
+     * @return whether the write was successful
+     */
+    private boolean write(T node, long snapshot) {
+        synchronized (writeLock) {
+            if (snapshot < written) {
+                return true;
+            }
+            try {
+                if (path != null) {
+                    Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+                    loaders.apply(temp).save(node);
+                    try {
+                        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } else {
+                    loader.save(node);
+                }
+                written = snapshot;
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+        }
+    }
+
     /**
      * Attempts to load the {@link #node} from the {@link #loader}.
      *
@@ -75,6 +350,7 @@ public class ConfigHolder<T extends ConfigurationNode> {
     public boolean load() {
         try {
             this.node = this.loader.load();
+            generation++;
             return true;
         } catch (Exception e) {
             e.printStackTrace();
@@ -0,0 +1,110 @@
+package com.mcsimonflash.sponge.libraryapi.configurate;
+
+import ninja.leaping.configurate.ConfigurationNode;
+
+/**
+ * A handle to the node at a fixed path of a {@link ConfigHolder}, created by
+ * {@link ConfigHolder#path(Object...)}.
+ *
+ * The resolved node is cached, so reading through the handle does not walk
+ * the tree from the root. The cache is invalidated when the holder loads a
+ * new root node and when the cached node is removed from the tree. Virtual
+ * nodes, which do not exist in the tree yet, are never cached.
+ *
+ * As with the nodes themselves, a handle is not safe for use by multiple
+ * threads while the tree is being modified.
+ *
+ * @param <T> The type of node (matches the holder's {@param <T>})
+ */
+public class ConfigPath<T extends ConfigurationNode> {
+
+    private final ConfigHolder<T> holder;
+    private final Object[] path;
+    private T node;
+    private int generation;
+
+    ConfigPath(ConfigHolder<T> holder, Object[] path) {
+        this.holder = holder;
+        this.path = path.clone();
+    }
+
+    /**
+     * Returns the node at the path, resolving it from the root node if the
+     * cached node is no longer valid.
+     *
+     * @return the node at the path
+     */
+    public T getNode() {
+        T node = this.node;
+        int generation = holder.getGeneration();
+        if (node != null && this.generation == generation && !node.isVirtual()) {
+            return node;
+        }
+        node = holder.getNode(path);
+        if (!node.isVirtual()) {
+            this.node = node;
+            this.generation = generation;
+        } else {
+            this.node = null;
+        }
+        return node;
+    }
+
+    /**
+     * @return a copy of the path of this handle
+     */
+    public Object[] getPath() {
+        return path.clone();
+    }
+
+    public int getInt(int def) {
+        return getNode().getInt(def);
+    }
+
+    public long getLong(long def) {
+        return getNode().getLong(def);
+    }
+
+    public double getDouble(double def) {
+        return getNode().getDouble(def);
+    }
+
+    public boolean getBoolean(boolean def) {
+        return getNode().getBoolean(def);
+    }
+
+    public String getString(String def) {
+        return getNode().getString(def);
+    }
+
+    public Object getValue() {
+        return getNode().getValue();
+    }
+
+    /**
+     * Sets the value of the node at the path. Setting a value on a virtual
+     * node attaches it to the tree, after which it is cached.
+     *
+     * @param value the value, or null to remove the node
+     */
+    public void setValue(Object value) {
+        getNode().setValue(value);
+    }
+
+    public void setInt(int value) {
+        setValue(value);
+    }
+
+    public void setLong(long value) {
+        setValue(value);
+    }
+
+    public void setDouble(double value) {
+        setValue(value);
+    }
+
+    public void setBoolean(boolean value) {
+        setValue(value);
+    }
+
+}
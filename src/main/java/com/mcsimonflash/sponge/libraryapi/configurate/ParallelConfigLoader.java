@@ -0,0 +1,129 @@
+package com.mcsimonflash.sponge.libraryapi.configurate;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+import java.io.Closeable;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads many {@link ConfigHolder}s in parallel on a bounded pool of threads,
+ * such as during server start, instead of one after another on the server
+ * thread.
+ *
+ * Holders are created without loading, using
+ * {@link ConfigHolder#ConfigHolder(ninja.leaping.configurate.loader.ConfigurationLoader, boolean)},
+ * and submitted with {@link #load(String, ConfigHolder)}. A holder must not
+ * be accessed until its future is complete. {@link #awaitAll()} waits for
+ * every submitted holder, and {@link #report()} lists the time each took to
+ * load, slowest first.
+ */
+public class ParallelConfigLoader implements Closeable {
+
+    private final ExecutorService executor;
+    private final List<Timing> timings = Lists.newArrayList();
+    private final List<CompletableFuture<Boolean>> futures = Lists.newArrayList();
+
+    /**
+     * Creates a new instance loading on at most the given number of threads.
+     *
+     * @param threads the number of threads
+     */
+    public ParallelConfigLoader(int threads) {
+        Preconditions.checkArgument(threads > 0, "threads must be positive");
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "LibraryAPI config loader " + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Submits the holder to be loaded on the pool.
+     *
+     * @param name the name of the config in the report
+     * @param holder the holder to load
+     * @return a future completed with whether the load was successful
+     */
+    public synchronized CompletableFuture<Boolean> load(String name, ConfigHolder<?> holder) {
+        CompletableFuture<Boolean> future = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            boolean loaded = holder.load();
+            synchronized (timings) {
+                timings.add(new Timing(name, System.nanoTime() - start, loaded));
+            }
+            return loaded;
+        }, executor);
+        futures.add(future);
+        return future;
+    }
+
+    /**
+     * Waits for every holder submitted so far to be loaded.
+     *
+     * @return whether every load was successful
+     */
+    public boolean awaitAll() {
+        List<CompletableFuture<Boolean>> futures;
+        synchronized (this) {
+            futures = Lists.newArrayList(this.futures);
+        }
+        boolean loaded = true;
+        for (CompletableFuture<Boolean> future : futures) {
+            loaded &= future.join();
+        }
+        return loaded;
+    }
+
+    /**
+     * Creates a report of the time taken to load each holder that has
+     * finished loading, slowest first.
+     *
+     * @return the lines of the report
+     */
+    public List<String> report() {
+        List<Timing> sorted;
+        synchronized (timings) {
+            sorted = Lists.newArrayList(timings);
+        }
+        sorted.sort(Comparator.comparingLong((Timing timing) -> timing.nanos).reversed());
+        List<String> lines = Lists.newArrayList();
+        long total = 0;
+        for (Timing timing : sorted) {
+            total += timing.nanos;
+            lines.add(timing.name + ": " + TimeUnit.NANOSECONDS.toMillis(timing.nanos) + "ms" + (timing.loaded ? "" : " (failed)"));
+        }
+        lines.add(0, "Loaded " + sorted.size() + " configs, " + TimeUnit.NANOSECONDS.toMillis(total) + "ms in total:");
+        return lines;
+    }
+
+    /**
+     * Stops the threads of the pool once every submitted holder is loaded.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    private static final class Timing {
+
+        private final String name;
+        private final long nanos;
+        private final boolean loaded;
+
+        private Timing(String name, long nanos, boolean loaded) {
+            this.name = name;
+            this.nanos = nanos;
+            this.loaded = loaded;
+        }
+
+    }
+
+}
@@ -0,0 +1,264 @@
+package com.mcsimonflash.sponge.libraryapi.configurate;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Maps;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.scheduler.Task;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Splits a config by a top level key, such as the uuid of a player, into one
+ * {@link ConfigHolder} per key, each stored in its own file.
+ *
+ * Shards are loaded the first time their key is accessed and kept in a cache
+ * holding at most a given number of shards, evicting the least recently used.
+ * A shard is only written when it is marked dirty, either by the setters of
+ * this class or by {@link #markDirty(Object)} before modifying its nodes
+ * directly, so saving a single key only ever writes that key's file.
+ *
+ * A dirty shard is pinned until it is written: if it is evicted, it is still
+ * returned the next time its key is accessed instead of being read again
+ * from the file, so no change is lost to an eviction and eviction itself
+ * never writes. Dirty shards are written by {@link #save(Object)} and
+ * {@link #saveAll()} on the calling thread, or by the task submitted with
+ * {@link #start(Object, long, TimeUnit)}, which copies them on the server
+ * thread and writes the copies on async threads. While a shard is written,
+ * loading it again waits for the write.
+ *
+ * As with {@link ConfigHolder}, the nodes of a shard must only be modified
+ * and saved on a single thread, usually the server thread. Since an evicted
+ * shard is replaced by a new holder when next accessed, shards and their
+ * nodes should not be kept by callers; access them through this class
+ * instead. A save delay set on a shard is ignored.
+ *
+ * @param <K> The type of the key of a shard
+ * @param <T> The type of node (matches the loader's {@param <NodeType>})
+ */
+public class ShardedConfigHolder<K, T extends ConfigurationNode> {
+
+    private final Path directory;
+    private final String extension;
+    private final LoadingCache<K, ConfigHolder<T>> shards;
+    private final Map<K, ConfigHolder<T>> dirty = Maps.newConcurrentMap();
+    private final Map<K, CompletableFuture<Boolean>> writing = Maps.newConcurrentMap();
+
+    /**
+     * Creates a new instance storing shards in the given directory, each
+     * named by its key and the extension.
+     *
+     * @param directory the directory holding the shards
+     * @param extension the extension of the shard files, such as "conf"
+     * @param loaders a function creating a loader for a path
+     * @param maxShards the maximum number of clean shards to keep loaded
+     */
+    public ShardedConfigHolder(Path directory, String extension, Function<Path, ConfigurationLoader<T>> loaders, long maxShards) {
+        this.directory = directory;
+        this.extension = extension;
+        this.shards = CacheBuilder.newBuilder()
+                .maximumSize(maxShards)
+                .build(new CacheLoader<K, ConfigHolder<T>>() {
+                    @Override
+                    public ConfigHolder<T> load(K key) throws IOException {
+                        ConfigHolder<T> pinned = dirty.get(key);
+                        if (pinned != null) {
+                            return pinned;
+                        }
+                        CompletableFuture<Boolean> write = writing.get(key);
+                        if (write != null) {
+                            write.join();
+                            pinned = dirty.get(key);
+                            if (pinned != null) {
+                                return pinned;
+                            }
+                        }
+                        return new ConfigHolder<>(getPath(key), loaders);
+                    }
+                });
+    }
+
+    /**
+     * Returns the shard for the key, loading it if it is not loaded.
+     *
+     * @param key the key of the shard
+     * @return the shard
+     */
+    public ConfigHolder<T> getShard(K key) {
+        return shards.getUnchecked(key);
+    }
+
+    /**
+     * Returns the node at the given path of the shard for the key. The shard
+     * must be marked dirty before the node is modified.
+     *
+     * @param key the key of the shard
+     * @param path the child nodes, if any
+     * @return the node at the provided path
+     */
+    public T getNode(K key, Object... path) {
+        return getShard(key).getNode(path);
+    }
+
+    /**
+     * Marks the shard for the key dirty and sets the value of the node at the
+     * given path.
+     *
+     * @param key the key of the shard
+     * @param value the value, or null to remove the node
+     * @param path the child nodes, if any
+     */
+    public void setValue(K key, Object value, Object... path) {
+        pin(key).getNode(path).setValue(value);
+    }
+
+    /**
+     * Marks the shard for the key as dirty, so it is pinned until it is
+     * written by the next save. This must be called before the nodes of the
+     * shard are modified, as an unpinned shard may be evicted and read again
+     * in between.
+     *
+     * @param key the key of the shard
+     */
+    public void markDirty(K key) {
+        pin(key);
+    }
+
+    /**
+     * Marks the shard for the key dirty, loading it if needed. The shard is
+     * loaded outside of the dirty map, as loading may wait for a write which
+     * pins the shard again if it fails.
+     *
+     * @param key the key of the shard
+     * @return the pinned shard
+     */
+    private ConfigHolder<T> pin(K key) {
+        ConfigHolder<T> shard = dirty.get(key);
+        if (shard == null) {
+            ConfigHolder<T> loaded = getShard(key);
+            shard = dirty.putIfAbsent(key, loaded);
+            if (shard == null) {
+                shard = loaded;
+            }
+        }
+        return shard;
+    }
+
+    /**
+     * Writes the shard for the key on the calling thread if it is dirty.
+     *
+     * @param key the key of the shard
+     * @return false if the shard failed to save, else true
+     */
+    public boolean save(K key) {
+        ConfigHolder<T> shard = dirty.get(key);
+        return shard == null || write(key, shard, null).join();
+    }
+
+    /**
+     * Writes every dirty shard on the calling thread.
+     *
+     * @return false if any shard failed to save, else true
+     */
+    public boolean saveAll() {
+        boolean saved = true;
+        for (K key : dirty.keySet()) {
+            saved &= save(key);
+        }
+        return saved;
+    }
+
+    /**
+     * Unpins and writes the shard. The write is registered before the shard
+     * is unpinned, so a load of the key in between waits for the write
+     * instead of reading the old file. If the write fails, the shard is
+     * pinned again unless it was marked dirty since.
+     *
+     * @param key the key of the shard
+     * @param shard the dirty shard
+     * @param plugin the plugin owning the async write, or null to write on
+     *     the calling thread
+     * @return a future completed with whether the write was successful
+     */
+    private CompletableFuture<Boolean> write(K key, ConfigHolder<T> shard, Object plugin) {
+        CompletableFuture<Boolean> done = new CompletableFuture<>();
+        writing.put(key, done);
+        dirty.remove(key, shard);
+        CompletableFuture<Boolean> future = plugin != null ? shard.saveAsync(plugin) : CompletableFuture.completedFuture(shard.saveNow());
+        future.whenComplete((saved, e) -> {
+            boolean success = Boolean.TRUE.equals(saved);
+            if (!success) {
+                dirty.putIfAbsent(key, shard);
+            }
+            writing.remove(key, done);
+            done.complete(success);
+        });
+        return done;
+    }
+
+    /**
+     * Submits a task on the server thread copying every dirty shard at the
+     * given interval and writing the copies on async threads.
+     *
+     * @param plugin the plugin owning the tasks
+     * @param interval the interval between saves
+     * @param unit the unit of the interval
+     * @return the submitted task
+     */
+    public Task start(Object plugin, long interval, TimeUnit unit) {
+        return Task.builder()
+                .interval(interval, unit)
+                .name("ShardedConfigHolder save task")
+                .execute(() -> {
+                    for (Map.Entry<K, ConfigHolder<T>> entry : dirty.entrySet()) {
+                        write(entry.getKey(), entry.getValue(), plugin);
+                    }
+                })
+                .submit(plugin);
+    }
+
+    /**
+     * Registers a listener saving every dirty shard when the server is
+     * stopping.
+     *
+     * @param plugin the plugin registering the listener
+     */
+    public void saveOnShutdown(Object plugin) {
+        Sponge.getEventManager().registerListener(plugin, GameStoppingServerEvent.class, event -> saveAll());
+    }
+
+    /**
+     * Writes the shard for the key if it is dirty and unloads it.
+     *
+     * @param key the key of the shard
+     */
+    public void unload(K key) {
+        save(key);
+        shards.invalidate(key);
+    }
+
+    /**
+     * @return the number of loaded shards
+     */
+    public long size() {
+        return shards.size();
+    }
+
+    /**
+     * @param key the key of a shard
+     * @return the path of the file of the shard
+     */
+    public Path getPath(K key) {
+        return directory.resolve(key + "." + extension);
+    }
+
+}
@@ -0,0 +1,381 @@
+package com.mcsimonflash.sponge.libraryapi.cooldown;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A cooldown table keyed by a player {@link UUID} and an action id, intended
+ * for hot checks where resolving a path through {@link CooldownService} is
+ * too expensive.
+ *
+ * Action names are interned to small ints through {@link #action(String)},
+ * which should be called once (such as when registering a command) and the
+ * id kept for later lookups. Players are stored in an open-addressed table
+ * keyed by the bits of their UUID, and each player holds the times for every
+ * action in a single {@link AtomicLongArray}. Lookups do not allocate and each
+ * tracked player costs a fixed amount of memory decided by the maximum number
+ * of actions.
+ *
+ * Reads never lock. Adding or removing a player locks the index, while
+ * resetting the cooldown of an existing player only writes to its array.
+ */
+public class CooldownIndex {
+
+    private final Map<String, Integer> actions = Maps.newConcurrentMap();
+    private final AtomicInteger nextAction = new AtomicInteger();
+    private final AtomicReferenceArray<String> names;
+    private final int maxActions;
+    private volatile CooldownJournal journal;
+    private volatile AtomicReferenceArray<Entry> table;
+    private int size;
+
+    /**
+     * Creates a new instance that supports up to the given number of actions.
+     *
+     * @param maxActions the maximum number of actions
+     */
+    public CooldownIndex(int maxActions) {
+        this(maxActions, 64);
+    }
+
+    /**
+     * Creates a new instance that supports up to the given number of actions
+     * and is sized to hold the given number of players without growing.
+     *
+     * @param maxActions the maximum number of actions
+     * @param expectedPlayers the expected number of players
+     */
+    public CooldownIndex(int maxActions, int expectedPlayers) {
+        Preconditions.checkArgument(maxActions > 0, "maxActions must be positive");
+        this.maxActions = maxActions;
+        this.names = new AtomicReferenceArray<>(maxActions);
+        this.table = new AtomicReferenceArray<>(capacityFor(expectedPlayers));
+    }
+
+    /**
+     * Returns the id of the given action name, assigning it the next free id
+     * if it has not been seen before.
+     *
+     * @param name the name of the action
+     * @return the id of the action
+     * @throws IllegalStateException if the maximum number of actions is
+     *         exceeded
+     */
+    public int action(String name) {
+        return actions.computeIfAbsent(name, n -> {
+            int id = nextAction.getAndIncrement();
+            if (id >= maxActions) {
+                throw new IllegalStateException("Unable to register action " + n + ": the index is limited to " + maxActions + " actions.");
+            }
+            names.set(id, n);
+            return id;
+        });
+    }
+
+    /**
+     * Returns the name of the action with the given id.
+     *
+     * @param action the id of the action
+     * @return the name of the action, or null if the id is not assigned
+     */
+    public String actionName(int action) {
+        return names.get(action);
+    }
+
+    /**
+     * Attaches the journal that records every reset made through this index.
+     * Called by {@link CooldownJournal} once it has replayed its records.
+     *
+     * @param journal the journal
+     */
+    void setJournal(CooldownJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Returns the cooldown of the given player and action, or 0.
+     *
+     * @param player the uuid of the player
+     * @param action the id of the action
+     * @return the cooldown, in milliseconds
+     */
+    public long getCooldown(UUID player, int action) {
+        Entry entry = find(player.getMostSignificantBits(), player.getLeastSignificantBits());
+        return entry != null ? entry.times.get(action) : 0;
+    }
+
+    /**
+     * Returns the time since the cooldown was set.
+     *
+     * @param player the uuid of the player
+     * @param action the id of the action
+     * @return the completed time, in milliseconds
+     */
+    public long completedTime(UUID player, int action) {
+        return System.currentTimeMillis() - getCooldown(player, action);
+    }
+
+    /**
+     * Returns the time until the cooldown is finished.
+     *
+     * @param cooldown the length of the cooldown, in milliseconds
+     * @param player the uuid of the player
+     * @param action the id of the action
+     * @return the remaining time, in milliseconds
+     */
+    public long remainingTime(long cooldown, UUID player, int action) {
+        return cooldown - completedTime(player, action);
+    }
+
+    /**
+     * Returns true if the cooldown is finished, else false.
+     *
+     * @param cooldown the length of the cooldown, in milliseconds
+     * @param player the uuid of the player
+     * @param action the id of the action
+     * @return whether the cooldown is finished
+     */
+    public boolean isFinished(long cooldown, UUID player, int action) {
+        return remainingTime(cooldown, player, action) <= 0;
+    }
+
+    /**
+     * Schedules the action to run in the given {@link ExpiryWheel} when the
+     * cooldown finishes, based on its current value.
+     *
+     * @see CooldownService#whenFinished(ExpiryWheel, long, Runnable, Object...)
+     *
+     * @param wheel the wheel to schedule the action in
+     * @param cooldown the length of the cooldown, in milliseconds
+     * @param action the action to run
+     * @param player the uuid of the player
+     * @param id the id of the action
+     * @return the subscription, which may be cancelled
+     */
+    public ExpiryWheel.Subscription whenFinished(ExpiryWheel wheel, long cooldown, Runnable action, UUID player, int id) {
+        return wheel.schedule(remainingTime(cooldown, player, id), action);
+    }
+
+    /**
+     * Resets the cooldown of the given player and action to the current time
+     * as set by {@link System#currentTimeMillis()}.
+     *
+     * @param player the uuid of the player
+     * @param action the id of the action
+     */
+    public void resetCooldown(UUID player, int action) {
+        resetCooldown(0, player, action);
+    }
+
+    /**
+     * Resets the cooldown of the given player and action to the current time
+     * as set by {@link System#currentTimeMillis()}, recording the length of
+     * the cooldown so an attached {@link CooldownJournal} can drop the entry
+     * once it has finished.
+     *
+     * @param cooldown the length of the cooldown, in milliseconds, or 0 if
+     *                 unknown
+     * @param player the uuid of the player
+     * @param action the id of the action
+     */
+    public void resetCooldown(long cooldown, UUID player, int action) {
+        long most = player.getMostSignificantBits(), least = player.getLeastSignificantBits();
+        long now = System.currentTimeMillis();
+        getOrCreate(most, least).times.set(action, now);
+        record(most, least, action, now, cooldown);
+    }
+
+    /**
+     * Atomically checks whether the cooldown is finished and, if it is, resets
+     * it to the current time.
+     *
+     * @see CooldownService#tryAcquire(long, Object...)
+     *
+     * @param cooldown the length of the cooldown, in milliseconds
+     * @param player the uuid of the player
+     * @param action the id of the action
+     * @return 0 if the cooldown was acquired, else the remaining time in
+     *         milliseconds
+     */
+    public long tryAcquire(long cooldown, UUID player, int action) {
+        long most = player.getMostSignificantBits(), least = player.getLeastSignificantBits();
+        AtomicLongArray times = getOrCreate(most, least).times;
+        long now = System.currentTimeMillis();
+        while (true) {
+            long last = times.get(action);
+            long remaining = cooldown - (now - last);
+            if (remaining > 0) {
+                return remaining;
+            } else if (times.compareAndSet(action, last, now)) {
+                record(most, least, action, now, cooldown);
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Restores a cooldown read from a {@link CooldownJournal}, keeping the
+     * existing time if it is more recent.
+     *
+     * @param most the most significant bits of the uuid
+     * @param least the least significant bits of the uuid
+     * @param action the id of the action
+     * @param time the time the cooldown was reset
+     */
+    void restore(long most, long least, int action, long time) {
+        AtomicLongArray times = getOrCreate(most, least).times;
+        long current;
+        do {
+            current = times.get(action);
+        } while (time > current && !times.compareAndSet(action, current, time));
+    }
+
+    /**
+     * Appends the reset to the attached journal, if any.
+     */
+    private void record(long most, long least, int action, long time, long cooldown) {
+        CooldownJournal journal = this.journal;
+        if (journal != null) {
+            journal.append(action, most, least, time, cooldown);
+        }
+    }
+
+    /**
+     * Removes every cooldown of the given player. This rebuilds the table and
+     * is meant for occasional cleanup rather than frequent use.
+     *
+     * @param player the uuid of the player
+     */
+    public synchronized void remove(UUID player) {
+        long most = player.getMostSignificantBits(), least = player.getLeastSignificantBits();
+        if (find(most, least) != null) {
+            AtomicReferenceArray<Entry> current = table;
+            AtomicReferenceArray<Entry> rebuilt = new AtomicReferenceArray<>(current.length());
+            for (int i = 0; i < current.length(); i++) {
+                Entry entry = current.get(i);
+                if (entry != null && !entry.matches(most, least)) {
+                    insert(rebuilt, entry);
+                }
+            }
+            table = rebuilt;
+            size--;
+        }
+    }
+
+    /**
+     * @return the number of players tracked by this index
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds the entry for the given uuid bits by linear probing.
+     *
+     * @param most the most significant bits of the uuid
+     * @param least the least significant bits of the uuid
+     * @return the entry, or null if absent
+     */
+    private Entry find(long most, long least) {
+        AtomicReferenceArray<Entry> table = this.table;
+        int mask = table.length() - 1;
+        for (int i = hash(most, least) & mask; ; i = (i + 1) & mask) {
+            Entry entry = table.get(i);
+            if (entry == null || entry.matches(most, least)) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Returns the entry for the given player, inserting a new entry if one is
+     * not present. The table is doubled when it becomes half full.
+     *
+     * @param most the most significant bits of the uuid
+     * @param least the least significant bits of the uuid
+     * @return the entry for the player
+     */
+    private Entry getOrCreate(long most, long least) {
+        Entry entry = find(most, least);
+        if (entry != null) {
+            return entry;
+        }
+        synchronized (this) {
+            entry = find(most, least);
+            if (entry == null) {
+                entry = new Entry(most, least, maxActions);
+                if (2 * (size + 1) > table.length()) {
+                    AtomicReferenceArray<Entry> current = table;
+                    AtomicReferenceArray<Entry> resized = new AtomicReferenceArray<>(current.length() * 2);
+                    for (int i = 0; i < current.length(); i++) {
+                        Entry existing = current.get(i);
+                        if (existing != null) {
+                            insert(resized, existing);
+                        }
+                    }
+                    insert(resized, entry);
+                    table = resized;
+                } else {
+                    insert(table, entry);
+                }
+                size++;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Inserts the entry into the first free slot of the given table.
+     *
+     * @param table the table
+     * @param entry the entry to insert
+     */
+    private static void insert(AtomicReferenceArray<Entry> table, Entry entry) {
+        int mask = table.length() - 1;
+        int i = hash(entry.most, entry.least) & mask;
+        while (table.get(i) != null) {
+            i = (i + 1) & mask;
+        }
+        table.set(i, entry);
+    }
+
+    private static int hash(long most, long least) {
+        long h = (most ^ least) * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int capacityFor(int players) {
+        int capacity = 16;
+        while (capacity < 2 * players) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * The cooldowns of a single player.
+     */
+    private static final class Entry {
+
+        private final long most, least;
+        private final AtomicLongArray times;
+
+        private Entry(long most, long least, int actions) {
+            this.most = most;
+            this.least = least;
+            this.times = new AtomicLongArray(actions);
+        }
+
+        private boolean matches(long most, long least) {
+            return this.most == most && this.least == least;
+        }
+
+    }
+
+}
@@ -0,0 +1,516 @@
+package com.mcsimonflash.sponge.libraryapi.cooldown;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.spongepowered.api.scheduler.Task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * An append-only binary journal persisting the cooldowns of a
+ * {@link CooldownIndex}.
+ *
+ * The journal is a memory-mapped file of fixed-size records. Every reset made
+ * through the index appends a cooldown record holding the uuid of the player,
+ * the action, the time and the length of the cooldown. Action names are
+ * written once per file as action records, so cooldown records only hold a
+ * small id. When the journal is opened, its records are replayed into the
+ * index in order.
+ *
+ * The type of a record is written after the rest of it, so a record torn by
+ * a crash is most likely left without a type and ends the journal. Replay
+ * also stops at the first record that is otherwise invalid, such as one
+ * referring to an unknown action, and later appends overwrite it.
+ *
+ * Since records are never overwritten, the file grows with every reset.
+ * {@link #compact()} rewrites the journal without superseded and finished
+ * cooldowns; it is safe to run on an async thread and only locks the journal
+ * while copying records appended during the compaction.
+ *
+ * A mapped file cannot be replaced or deleted on every platform until it is
+ * unmapped, which only happens once the buffer is garbage collected. So a
+ * compacted journal is not moved over the current file but becomes the next
+ * generation, named {@code path.N}, and the journal is opened from the
+ * highest generation. Older generations are deleted once they can be.
+ *
+ * Action names are limited to {@value #MAX_NAME_LENGTH} bytes of UTF-8.
+ */
+public class CooldownJournal implements Closeable {
+
+    /**
+     * The maximum length of an action name, in bytes.
+     */
+    public static final int MAX_NAME_LENGTH = 32;
+
+    private static final int MAGIC = 0x43444A31;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_SIZE = 40;
+    private static final int REGION_SIZE = 1 << 20;
+    private static final byte ACTION = 1, COOLDOWN = 2;
+
+    private final Path path;
+    private final CooldownIndex index;
+    private final Map<String, Integer> ids = Maps.newHashMap();
+    private final List<String> names = Lists.newArrayList();
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    private int[] translation = new int[0];
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int generation;
+    private int position, live, appended;
+
+    /**
+     * Opens the journal at the given path, creating it if it does not exist,
+     * and replays its records into the given index. The index then appends
+     * every reset to this journal until it is closed.
+     *
+     * @param path the path to the journal file
+     * @param index the index persisted by this journal
+     * @throws IOException if the journal could not be opened or is invalid
+     */
+    public CooldownJournal(Path path, CooldownIndex index) throws IOException {
+        this.path = path;
+        this.index = index;
+        for (int existing : generations()) {
+            generation = Math.max(generation, existing);
+        }
+        open();
+        deleteStale();
+        replay();
+        index.setJournal(this);
+    }
+
+    /**
+     * Opens the channel and maps the file, writing a header if the file is
+     * new.
+     *
+     * @throws IOException if the file could not be opened or is invalid
+     */
+    private void open() throws IOException {
+        Path file = file(generation);
+        channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        long size = channel.size();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(REGION_SIZE, (size + REGION_SIZE - 1) / REGION_SIZE * REGION_SIZE));
+        if (size < HEADER_SIZE) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, RECORD_SIZE);
+        } else if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != RECORD_SIZE) {
+            channel.close();
+            throw new IOException("Invalid cooldown journal header in " + file + ".");
+        }
+    }
+
+    /**
+     * @param generation the generation of the journal
+     * @return the file of the generation, which is the path itself for the
+     *     first generation
+     */
+    private Path file(int generation) {
+        return generation == 0 ? path : path.resolveSibling(path.getFileName() + "." + generation);
+    }
+
+    /**
+     * Returns the generations of the journal which have a file.
+     *
+     * @return the generations
+     * @throws IOException if the directory could not be read
+     */
+    private List<Integer> generations() throws IOException {
+        List<Integer> generations = Lists.newArrayList();
+        if (Files.exists(path)) {
+            generations.add(0);
+        }
+        String prefix = path.getFileName() + ".";
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path.toAbsolutePath().getParent(), prefix + "*")) {
+            for (Path file : stream) {
+                String suffix = file.getFileName().toString().substring(prefix.length());
+                if (!suffix.isEmpty() && suffix.length() < 10 && suffix.chars().allMatch(Character::isDigit)) {
+                    generations.add(Integer.parseInt(suffix));
+                }
+            }
+        }
+        return generations;
+    }
+
+    /**
+     * Deletes the files of generations older than the current one. A file
+     * which is still mapped may not be deletable yet, in which case it is
+     * deleted after a later compaction or when the journal is next opened.
+     */
+    private void deleteStale() {
+        try {
+            for (int stale : generations()) {
+                if (stale < generation) {
+                    try {
+                        Files.deleteIfExists(file(stale));
+                    } catch (IOException ignored) {}
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Replays every valid record into the index and positions the journal
+     * after the last one. Anything after the last valid record, such as a
+     * torn or invalid record and whatever follows it, is cleared so that no
+     * stale record is replayed once later appends overwrite the gap.
+     */
+    private void replay() {
+        int pos = HEADER_SIZE;
+        for (; pos + RECORD_SIZE <= buffer.capacity(); pos += RECORD_SIZE) {
+            byte type = buffer.get(pos);
+            if (type == ACTION) {
+                int length = buffer.get(pos + 1);
+                int id = buffer.getInt(pos + 4);
+                if (length < 0 || length > MAX_NAME_LENGTH || id < 0 || id > names.size()) {
+                    break;
+                }
+                byte[] bytes = new byte[length];
+                for (int i = 0; i < bytes.length; i++) {
+                    bytes[i] = buffer.get(pos + 8 + i);
+                }
+                String name = new String(bytes, StandardCharsets.UTF_8);
+                while (names.size() <= id) {
+                    names.add(null);
+                }
+                names.set(id, name);
+                ids.put(name, id);
+            } else if (type == COOLDOWN) {
+                int id = buffer.getInt(pos + 4);
+                if (id < 0 || id >= names.size() || names.get(id) == null) {
+                    break;
+                }
+                index.restore(buffer.getLong(pos + 8), buffer.getLong(pos + 16), index.action(names.get(id)), buffer.getLong(pos + 24));
+                live++;
+            } else {
+                break;
+            }
+        }
+        position = pos;
+        int dirty = buffer.capacity();
+        while (dirty > pos && buffer.get(dirty - 1) == 0) {
+            dirty--;
+        }
+        for (int i = pos; i < dirty; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * Appends a cooldown record, preceded by an action record if the action
+     * has not yet been written to this journal.
+     *
+     * @param action the id of the action in the index
+     * @param most the most significant bits of the uuid
+     * @param least the least significant bits of the uuid
+     * @param time the time the cooldown was reset
+     * @param cooldown the length of the cooldown, or 0 if unknown
+     * @throws IllegalArgumentException if the action name is too long
+     * @throws UncheckedIOException if the journal could not be extended
+     */
+    synchronized void append(int action, long most, long least, long time, long cooldown) {
+        if (channel == null) {
+            return;
+        }
+        int id = journalId(action);
+        reserve();
+        buffer.putInt(position + 4, id);
+        buffer.putLong(position + 8, most);
+        buffer.putLong(position + 16, least);
+        buffer.putLong(position + 24, time);
+        buffer.putLong(position + 32, cooldown);
+        buffer.put(position, COOLDOWN);
+        position += RECORD_SIZE;
+        appended++;
+    }
+
+    /**
+     * Returns the journal id of the given index action, writing an action
+     * record if this journal has not seen the action name before.
+     *
+     * @param action the id of the action in the index
+     * @return the id of the action in this journal
+     */
+    private int journalId(int action) {
+        if (action < translation.length && translation[action] != 0) {
+            return translation[action] - 1;
+        }
+        String name = index.actionName(action);
+        Integer id = ids.get(name);
+        if (id == null) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > MAX_NAME_LENGTH) {
+                throw new IllegalArgumentException("Action name " + name + " exceeds " + MAX_NAME_LENGTH + " bytes.");
+            }
+            id = names.size();
+            reserve();
+            buffer.put(position + 1, (byte) bytes.length);
+            buffer.putInt(position + 4, id);
+            for (int i = 0; i < bytes.length; i++) {
+                buffer.put(position + 8 + i, bytes[i]);
+            }
+            buffer.put(position, ACTION);
+            position += RECORD_SIZE;
+            names.add(name);
+            ids.put(name, id);
+        }
+        if (action >= translation.length) {
+            translation = Arrays.copyOf(translation, action + 1);
+        }
+        translation[action] = id + 1;
+        return id;
+    }
+
+    /**
+     * Ensures the mapped region has room for another record, mapping a larger
+     * region of the file if it does not.
+     */
+    private void reserve() {
+        if (position + RECORD_SIZE > buffer.capacity()) {
+            try {
+                buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, buffer.capacity() + REGION_SIZE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Compacts the journal if more records have been appended since the last
+     * compaction than there were live records after it.
+     *
+     * @return whether the journal was compacted
+     * @throws IOException if the compacted journal could not be written
+     */
+    public boolean compactIfNeeded() throws IOException {
+        int appended, live;
+        synchronized (this) {
+            appended = this.appended;
+            live = this.live;
+        }
+        if (appended > Math.max(1024, live)) {
+            return compact();
+        }
+        return false;
+    }
+
+    /**
+     * Rewrites the journal with only the latest record of every cooldown that
+     * has not finished. Cooldowns reset without a known length are kept until
+     * they are superseded.
+     *
+     * The records present when the compaction starts are read, written to a
+     * temporary file and forced to the storage device without locking the
+     * journal. The journal is then only locked to copy any records appended in
+     * the meantime, which are no less durable than in the journal itself,
+     * before the temporary file is atomically renamed to the next generation
+     * and the journal reopened from it. If the compaction fails, the
+     * temporary file is deleted and the journal is left as it was.
+     *
+     * @return false if another compaction is in progress, else true
+     * @throws IOException if the compacted journal could not be written
+     */
+    public boolean compact() throws IOException {
+        if (!compacting.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            int end;
+            ByteBuffer snapshot;
+            List<String> snapshotNames;
+            synchronized (this) {
+                if (channel == null) {
+                    return false;
+                }
+                end = position;
+                snapshot = buffer.duplicate();
+                snapshotNames = Lists.newArrayList(names);
+            }
+            Map<Key, Integer> latest = Maps.newLinkedHashMap();
+            for (int pos = HEADER_SIZE; pos < end; pos += RECORD_SIZE) {
+                if (snapshot.get(pos) == COOLDOWN) {
+                    Key key = new Key(snapshot.getLong(pos + 8), snapshot.getLong(pos + 16), snapshot.getInt(pos + 4));
+                    latest.remove(key);
+                    latest.put(key, pos);
+                }
+            }
+            long now = System.currentTimeMillis();
+            Path temp = path.resolveSibling(path.getFileName() + ".compact");
+            boolean moved = false;
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer batch = ByteBuffer.allocate(RECORD_SIZE * 256);
+                batch.putInt(MAGIC).putInt(RECORD_SIZE);
+                for (int id = 0; id < snapshotNames.size(); id++) {
+                    byte[] bytes = snapshotNames.get(id).getBytes(StandardCharsets.UTF_8);
+                    batch.put(ACTION).put((byte) bytes.length).putShort((short) 0).putInt(id).put(bytes).put(new byte[RECORD_SIZE - 8 - bytes.length]);
+                    drain(out, batch);
+                }
+                int kept = 0;
+                for (int pos : latest.values()) {
+                    long time = snapshot.getLong(pos + 24), cooldown = snapshot.getLong(pos + 32);
+                    if (cooldown <= 0 || time + cooldown > now) {
+                        for (int i = 0; i < RECORD_SIZE; i++) {
+                            batch.put(snapshot.get(pos + i));
+                        }
+                        drain(out, batch);
+                        kept++;
+                    }
+                }
+                batch.flip();
+                while (batch.hasRemaining()) {
+                    out.write(batch);
+                }
+                out.force(true);
+                synchronized (this) {
+                    if (channel == null) {
+                        return false;
+                    }
+                    ByteBuffer tail = buffer.duplicate();
+                    tail.limit(position).position(end);
+                    while (tail.hasRemaining()) {
+                        out.write(tail);
+                    }
+                    int size = (int) out.position();
+                    out.close();
+                    Path next = file(generation + 1);
+                    try {
+                        Files.move(temp, next, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException e) {
+                        Files.move(temp, next, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                    moved = true;
+                    channel.close();
+                    generation++;
+                    open();
+                    live = kept + (position - end) / RECORD_SIZE;
+                    appended = 0;
+                    position = size;
+                }
+            } finally {
+                if (!moved) {
+                    Files.deleteIfExists(temp);
+                }
+            }
+            deleteStale();
+            return true;
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    /**
+     * Writes the batch to the channel once it has no room left for another
+     * record.
+     */
+    private static void drain(FileChannel out, ByteBuffer batch) throws IOException {
+        if (batch.remaining() < RECORD_SIZE) {
+            batch.flip();
+            while (batch.hasRemaining()) {
+                out.write(batch);
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Submits an async task checking whether the journal should be compacted
+     * at the given interval.
+     *
+     * @see #compactIfNeeded()
+     *
+     * @param plugin the plugin owning the task
+     * @param interval the interval between checks
+     * @param unit the unit of the interval
+     * @return the submitted task
+     */
+    public Task scheduleCompaction(Object plugin, long interval, TimeUnit unit) {
+        return Task.builder()
+                .async()
+                .delay(interval, unit)
+                .interval(interval, unit)
+                .name("CooldownJournal compaction task")
+                .execute(() -> {
+                    try {
+                        compactIfNeeded();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                })
+                .submit(plugin);
+    }
+
+    /**
+     * Forces any records written to the mapped file to the storage device.
+     */
+    public synchronized void force() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Forces and closes the journal and detaches it from the index.
+     *
+     * @throws IOException if the channel could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            index.setJournal(null);
+            buffer.force();
+            channel.close();
+            channel = null;
+        }
+    }
+
+    /**
+     * Identifies a cooldown record by player and action.
+     */
+    private static final class Key {
+
+        private final long most, least;
+        private final int action;
+
+        private Key(long most, long least, int action) {
+            this.most = most;
+            this.least = least;
+            this.action = action;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) obj;
+            return most == key.most && least == key.least && action == key.action;
+        }
+
+        @Override
+        public int hashCode() {
+            long h = (most ^ least) * 0x9E3779B97F4A7C15L + action;
+            return (int) (h ^ (h >>> 32));
+        }
+
+    }
+
+}
@@ -1,6 +1,22 @@
 package com.mcsimonflash.sponge.libraryapi.cooldown;
 
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.mcsimonflash.sponge.libraryapi.configurate.ConfigHolder;
+import ninja.leaping.configurate.ConfigurationNode;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.scheduler.Task;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 
 /* TODO:
  * The original version of this service had a path signature of User, String as
@@ -10,18 +26,155 @@ import com.mcsimonflash.sponge.libraryapi.configurate.ConfigHolder;
  */
 /**
  * Contains utility methods for dealing with processing cooldowns.
+ *
+ * Cooldowns are held in memory, which is the source of truth for every query.
+ * Resetting a cooldown only marks its path as dirty; dirty paths are written
+ * to the {@link ConfigHolder} in a batch by {@link #save()}, which may be run
+ * periodically and when the server stops. The nodes of the config are only
+ * modified on the thread calling save, which must be the server thread; the
+ * periodic save only writes the file on an async thread.
+ *
+ * Path elements are keyed by their {@link String#valueOf(Object)} so that a
+ * path built from objects (such as a {@link java.util.UUID}) matches the same
+ * path loaded back from the config.
+ *
+ * Cooldowns acquired or reset with a known length can be evicted once they
+ * have finished by {@link #sweep(int)}, which removes them from memory and,
+ * on the next save, from the config. The length is saved with the time as a
+ * list of {@code [time, length]}, so cooldowns loaded from the config can be
+ * evicted as well. Cooldowns without a known length, such as those saved by
+ * earlier versions, use the length set for their path with
+ * {@link #setDefaultCooldown(long, Object...)}, if any.
  */
 public class CooldownService {
 
-    private final ConfigHolder config;
+    private static final long EVICTED = Long.MIN_VALUE;
+    private static final AtomicLongFieldUpdater<Entry> TIME = AtomicLongFieldUpdater.newUpdater(Entry.class, "time");
+
+    private final ConfigHolder<?> config;
+    private final Map<List<String>, Entry> cooldowns = Maps.newConcurrentMap();
+    private final Set<List<String>> dirty = Sets.newConcurrentHashSet();
+    private final Map<List<String>, Long> defaults = Maps.newConcurrentMap();
+    private final AtomicLong evicted = new AtomicLong();
+    private final Object sweepLock = new Object();
+    private Iterator<Map.Entry<List<String>, Entry>> sweeper;
 
     /**
-     * Creates a new instance for the given {@link ConfigHolder}.
+     * Creates a new instance for the given {@link ConfigHolder}. Existing
+     * cooldowns are read from the config once; changes are only written when
+     * {@link #save()} is called.
      *
      * @param config the ConfigHolder for the config.
      */
     public CooldownService(ConfigHolder config) {
         this.config = config;
+        load(config.getRootNode(), new String[0]);
+    }
+
+    /**
+     * Creates a new instance for the given {@link ConfigHolder} which saves
+     * dirty cooldowns on a task running at the given interval as well as when
+     * the server is stopping. The dirty cooldowns are written to the nodes on
+     * the server thread, and the file is written on an async thread.
+     *
+     * @param config the ConfigHolder for the config
+     * @param plugin the plugin owning the save task
+     * @param interval the interval between saves
+     * @param unit the unit of the interval
+     */
+    public CooldownService(ConfigHolder config, Object plugin, long interval, TimeUnit unit) {
+        this(config);
+        Task.builder()
+                .delay(interval, unit)
+                .interval(interval, unit)
+                .name("CooldownService save task")
+                .execute(() -> {
+                    if (apply()) {
+                        config.saveAsync(plugin);
+                    }
+                })
+                .submit(plugin);
+        Sponge.getEventManager().registerListener(plugin, GameStoppingServerEvent.class, event -> {
+            save();
+            config.flush();
+        });
+    }
+
+    /**
+     * Submits a task evicting finished cooldowns every tick, examining at
+     * most the given number of entries each time.
+     *
+     * @see #sweep(int)
+     *
+     * @param plugin the plugin owning the task
+     * @param limit the maximum number of entries examined per tick
+     * @return the submitted task
+     */
+    public Task startEviction(Object plugin, int limit) {
+        return Task.builder()
+                .intervalTicks(1)
+                .name("CooldownService eviction task")
+                .execute(() -> sweep(limit))
+                .submit(plugin);
+    }
+
+    /**
+     * Sets the length used to evict cooldowns at or below the given path which
+     * have no recorded length, such as cooldowns reset with
+     * {@link #resetCooldown(Object...)} or saved by earlier versions. The
+     * length set for the longest matching path is used.
+     *
+     * @param cooldown the length of the cooldowns, in milliseconds, or 0 to
+     *                 remove the length
+     * @param path the path to the node
+     */
+    public void setDefaultCooldown(long cooldown, Object... path) {
+        if (cooldown > 0) {
+            defaults.put(key(path), cooldown);
+        } else {
+            defaults.remove(key(path));
+        }
+    }
+
+    /**
+     * Recursively reads every leaf node holding a number, or a list of the
+     * time and length, into the cooldown map. Used once when the service is
+     * created.
+     *
+     * @param node the current node
+     * @param path the path to the current node
+     */
+    private void load(ConfigurationNode node, String[] path) {
+        if (node.hasMapChildren()) {
+            for (Map.Entry<Object, ? extends ConfigurationNode> entry : node.getChildrenMap().entrySet()) {
+                String[] child = Arrays.copyOf(path, path.length + 1);
+                child[path.length] = String.valueOf(entry.getKey());
+                load(entry.getValue(), child);
+            }
+        } else if (path.length == 0) {
+            return;
+        } else if (node.hasListChildren()) {
+            List<? extends ConfigurationNode> list = node.getChildrenList();
+            if (list.size() == 2) {
+                cooldowns.put(Arrays.asList(path), new Entry(list.get(0).getLong(), list.get(1).getLong()));
+            }
+        } else if (node.getValue() instanceof Number) {
+            cooldowns.put(Arrays.asList(path), new Entry(((Number) node.getValue()).longValue(), 0));
+        }
+    }
+
+    /**
+     * Converts the given path into the key used by the cooldown map.
+     *
+     * @param path the path to the node
+     * @return the key for the path
+     */
+    private static List<String> key(Object... path) {
+        String[] key = new String[path.length];
+        for (int i = 0; i < path.length; i++) {
+            key[i] = String.valueOf(path[i]);
+        }
+        return Arrays.asList(key);
     }
 
     /**
@@ -31,7 +184,12 @@ public class CooldownService {
      * @return the cooldown, in milliseconds
      */
     public long getCooldown(Object... path) {
-        return config.getNode(path).getLong(0);
+        Entry entry = cooldowns.get(key(path));
+        if (entry != null) {
+            long time = entry.time;
+            return time != EVICTED ? time : 0;
+        }
+        return 0;
     }
 
     /**
@@ -66,16 +224,250 @@ public class CooldownService {
         return remainingTime(cooldown, path) <= 0;
     }
 
+    /**
+     * Schedules the action to run in the given {@link ExpiryWheel} when the
+     * cooldown of the given path finishes, based on its current value. The
+     * action is not rescheduled if the cooldown is reset afterwards.
+     *
+     * @param wheel the wheel to schedule the action in
+     * @param cooldown the length of the cooldown, in milliseconds
+     * @param action the action to run
+     * @param path the path to the node
+     * @return the subscription, which may be cancelled
+     */
+    public ExpiryWheel.Subscription whenFinished(ExpiryWheel wheel, long cooldown, Runnable action, Object... path) {
+        return wheel.schedule(remainingTime(cooldown, path), action);
+    }
+
     /**
      * Resets the cooldown of the given path to the current time as set by
      * {@link System#currentTimeMillis()}.
      *
+     * The change is only held in memory until the next call to
+     * {@link #save()}, so the config is no longer saved by this method.
+     *
      * @param path the path to the node
-     * @return whether the config saved successfully
+     * @return true, as the config is not saved; failures to save are
+     *     reported by the future of {@link #save()}
      */
     public boolean resetCooldown(Object... path) {
-        config.getNode(path).setValue(System.currentTimeMillis());
-        return config.save();
+        return resetCooldownFor(0, path);
+    }
+
+    /**
+     * Resets the cooldown of the given path to the current time as set by
+     * {@link System#currentTimeMillis()}, recording the length of the
+     * cooldown so it may be evicted once finished. This is not an overload of
+     * {@link #resetCooldown(Object...)}, which would make every call passing a
+     * length ambiguous.
+     *
+     * @param cooldown the length of the cooldown, in milliseconds, or 0 to
+     *                 keep the previously recorded length
+     * @param path the path to the node
+     * @return true, as the config is not saved
+     */
+    public boolean resetCooldownFor(long cooldown, Object... path) {
+        List<String> key = key(path);
+        long now = System.currentTimeMillis();
+        while (true) {
+            Entry entry = cooldowns.putIfAbsent(key, new Entry(now, cooldown));
+            if (entry == null) {
+                break;
+            }
+            long last = entry.time;
+            if (last == EVICTED) {
+                cooldowns.remove(key, entry);
+            } else if (TIME.compareAndSet(entry, last, now)) {
+                if (cooldown > 0) {
+                    entry.cooldown = cooldown;
+                }
+                break;
+            }
+        }
+        dirty.add(key);
+        return true;
+    }
+
+    /**
+     * Atomically checks whether the cooldown of the given path is finished
+     * and, if it is, resets it to the current time. This replaces the pattern
+     * of calling {@link #isFinished(long, Object...)} followed by
+     * {@link #resetCooldown(Object...)}, which resolves the path twice and
+     * allows two callers to both pass the check.
+     *
+     * The claim is made with a compare-and-set on the stored time, so exactly
+     * one of several concurrent callers can acquire a finished cooldown.
+     *
+     * @param cooldown the length of the cooldown, in milliseconds
+     * @param path the path to the node
+     * @return 0 if the cooldown was acquired, else the remaining time in
+     *         milliseconds
+     */
+    public long tryAcquire(long cooldown, Object... path) {
+        List<String> key = key(path);
+        long now = System.currentTimeMillis();
+        Entry entry = cooldowns.get(key);
+        while (true) {
+            if (entry == null) {
+                entry = cooldowns.putIfAbsent(key, new Entry(now, cooldown));
+                if (entry == null) {
+                    dirty.add(key);
+                    return 0;
+                }
+            }
+            long last = entry.time;
+            long remaining = cooldown - (now - last);
+            if (last == EVICTED) {
+                cooldowns.remove(key, entry);
+                entry = null;
+            } else if (remaining > 0) {
+                return remaining;
+            } else if (TIME.compareAndSet(entry, last, now)) {
+                entry.cooldown = cooldown;
+                dirty.add(key);
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Evicts finished cooldowns, examining at most the given number of entries.
+     * Each call continues from where the previous call stopped, so repeated
+     * calls incrementally sweep every entry without a single long pass.
+     *
+     * Only cooldowns with a recorded length (from
+     * {@link #tryAcquire(long, Object...)} or
+     * {@link #resetCooldownFor(long, Object...)}), or with a length set by
+     * {@link #setDefaultCooldown(long, Object...)}, are evicted. Evicted paths
+     * are removed from the config on the next save.
+     *
+     * @param limit the maximum number of entries to examine
+     * @return the number of evicted entries
+     */
+    public int sweep(int limit) {
+        long now = System.currentTimeMillis();
+        int count = 0;
+        synchronized (sweepLock) {
+            for (int i = 0; i < limit; i++) {
+                if (sweeper == null || !sweeper.hasNext()) {
+                    sweeper = cooldowns.entrySet().iterator();
+                    if (!sweeper.hasNext()) {
+                        break;
+                    }
+                }
+                Map.Entry<List<String>, Entry> next = sweeper.next();
+                Entry entry = next.getValue();
+                long time = entry.time;
+                long cooldown = entry.cooldown > 0 ? entry.cooldown : defaultCooldown(next.getKey());
+                if (time != EVICTED && cooldown > 0 && now - time >= cooldown && TIME.compareAndSet(entry, time, EVICTED)) {
+                    cooldowns.remove(next.getKey(), entry);
+                    dirty.add(next.getKey());
+                    count++;
+                }
+            }
+        }
+        evicted.addAndGet(count);
+        return count;
+    }
+
+    /**
+     * Returns the length set for the longest path containing the given path
+     * by {@link #setDefaultCooldown(long, Object...)}.
+     *
+     * @param key the path to the node
+     * @return the length, or 0 if none is set
+     */
+    private long defaultCooldown(List<String> key) {
+        if (defaults.isEmpty()) {
+            return 0;
+        }
+        for (int i = key.size(); i >= 0; i--) {
+            Long cooldown = defaults.get(key.subList(0, i));
+            if (cooldown != null) {
+                return cooldown;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the total number of entries evicted by {@link #sweep(int)}
+     */
+    public long getEvictedCount() {
+        return evicted.get();
+    }
+
+    /**
+     * Writes all dirty cooldowns to the config and saves it. If no cooldowns
+     * have changed since the last save, the config is not saved. This must be
+     * called on the server thread, as it modifies the nodes of the config.
+     *
+     * @see ConfigHolder#save()
+     *
+     * @return a future completed with whether the config saved successfully
+     */
+    public CompletableFuture<Boolean> save() {
+        return apply() ? config.save() : CompletableFuture.completedFuture(true);
+    }
+
+    /**
+     * Writes all dirty cooldowns to the nodes of the config without saving it.
+     *
+     * A path is removed from the dirty set before its value is read, so any
+     * reset happening during a save is written by the following save.
+     *
+     * @return whether any cooldown was written
+     */
+    private synchronized boolean apply() {
+        if (dirty.isEmpty()) {
+            return false;
+        }
+        Iterator<List<String>> iterator = dirty.iterator();
+        while (iterator.hasNext()) {
+            List<String> key = iterator.next();
+            iterator.remove();
+            Entry entry = cooldowns.get(key);
+            long time = entry != null ? entry.time : EVICTED;
+            if (time != EVICTED) {
+                long cooldown = entry.cooldown;
+                config.getNode(key.toArray()).setValue(cooldown > 0 ? Arrays.asList(time, cooldown) : time);
+            } else {
+                remove(key);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the node at the given path along with any parents left empty.
+     *
+     * @param key the path to the node
+     */
+    private void remove(List<String> key) {
+        config.getNode(key.toArray()).setValue(null);
+        for (int i = key.size() - 1; i > 0; i--) {
+            ConfigurationNode parent = config.getNode(key.subList(0, i).toArray());
+            if (!parent.getChildrenMap().isEmpty()) {
+                break;
+            }
+            parent.setValue(null);
+        }
+    }
+
+    /**
+     * The time and length of a cooldown. The time is updated through
+     * {@link #TIME} and set to {@link #EVICTED} once the entry is evicted.
+     */
+    private static final class Entry {
+
+        volatile long time;
+        volatile long cooldown;
+
+        private Entry(long time, long cooldown) {
+            this.time = time;
+            this.cooldown = cooldown;
+        }
+
     }
 
-}
\ No newline at end of file
+}
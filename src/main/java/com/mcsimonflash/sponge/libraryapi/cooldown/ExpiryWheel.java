@@ -0,0 +1,198 @@
+package com.mcsimonflash.sponge.libraryapi.cooldown;
+
+import com.google.common.base.Preconditions;
+import org.spongepowered.api.scheduler.Task;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A hashed timing wheel used to run actions when cooldowns finish, instead of
+ * polling {@link CooldownService#isFinished(long, Object...)} from repeating
+ * tasks.
+ *
+ * The wheel advances one slot per server tick. Each slot holds a doubly linked
+ * list of subscriptions along with the number of full rotations remaining
+ * before they expire, so scheduling and cancelling are both O(1) and every
+ * subscription that expires in a tick is run in a single batch.
+ *
+ * Subscriptions may be scheduled and cancelled from any thread; they are
+ * queued and applied to the wheel at the start of the next tick. The wheel
+ * itself is advanced by {@link #tick()}, which is run on the main thread by
+ * the task submitted in {@link #start(Object)}.
+ */
+public class ExpiryWheel {
+
+    /**
+     * The length of a server tick, in milliseconds.
+     */
+    public static final long TICK_MILLIS = 50;
+
+    private final Subscription[] buckets;
+    private final int mask;
+    private final Queue<Subscription> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Subscription> cancelled = new ConcurrentLinkedQueue<>();
+    private volatile long tick;
+
+    /**
+     * Creates a new instance with 512 slots, or a little over 25 seconds per
+     * rotation.
+     */
+    public ExpiryWheel() {
+        this(512);
+    }
+
+    /**
+     * Creates a new instance with the given number of slots, which must be a
+     * power of two.
+     *
+     * @param slots the number of slots in the wheel
+     */
+    public ExpiryWheel(int slots) {
+        Preconditions.checkArgument(slots > 0 && (slots & (slots - 1)) == 0, "slots must be a power of two");
+        this.buckets = new Subscription[slots];
+        this.mask = slots - 1;
+    }
+
+    /**
+     * Submits a task advancing this wheel every tick.
+     *
+     * @param plugin the plugin owning the task
+     * @return the submitted task
+     */
+    public Task start(Object plugin) {
+        return Task.builder()
+                .intervalTicks(1)
+                .name("ExpiryWheel tick task")
+                .execute(this::tick)
+                .submit(plugin);
+    }
+
+    /**
+     * Schedules the action to run after the given delay, rounded up to the
+     * next tick. The action runs on the thread advancing the wheel.
+     *
+     * @param delay the delay, in milliseconds
+     * @param action the action to run
+     * @return the subscription, which may be cancelled
+     */
+    public Subscription schedule(long delay, Runnable action) {
+        long ticks = Math.max(0, (delay + TICK_MILLIS - 1) / TICK_MILLIS);
+        Subscription subscription = new Subscription(tick + ticks, action);
+        pending.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Advances the wheel by one tick, applies queued subscriptions and
+     * cancellations, then runs every action expiring in this tick.
+     */
+    public void tick() {
+        long now = ++tick;
+        Subscription subscription;
+        while ((subscription = cancelled.poll()) != null) {
+            unlink(subscription);
+        }
+        while ((subscription = pending.poll()) != null) {
+            if (subscription.state.get() == Subscription.PENDING) {
+                long deadline = Math.max(subscription.deadline, now);
+                subscription.rounds = (deadline - now) / buckets.length;
+                link(subscription, (int) (deadline & mask));
+            }
+        }
+        int index = (int) (now & mask);
+        subscription = buckets[index];
+        while (subscription != null) {
+            Subscription next = subscription.next;
+            if (subscription.rounds <= 0) {
+                unlink(subscription);
+                if (subscription.state.compareAndSet(Subscription.PENDING, Subscription.EXPIRED)) {
+                    try {
+                        subscription.action.run();
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+            } else {
+                subscription.rounds--;
+            }
+            subscription = next;
+        }
+    }
+
+    private void link(Subscription subscription, int index) {
+        subscription.bucket = index;
+        subscription.next = buckets[index];
+        if (buckets[index] != null) {
+            buckets[index].previous = subscription;
+        }
+        buckets[index] = subscription;
+    }
+
+    private void unlink(Subscription subscription) {
+        if (subscription.bucket < 0) {
+            return;
+        }
+        if (subscription.previous != null) {
+            subscription.previous.next = subscription.next;
+        } else {
+            buckets[subscription.bucket] = subscription.next;
+        }
+        if (subscription.next != null) {
+            subscription.next.previous = subscription.previous;
+        }
+        subscription.previous = subscription.next = null;
+        subscription.bucket = -1;
+    }
+
+    /**
+     * An action scheduled in an {@link ExpiryWheel}.
+     */
+    public final class Subscription {
+
+        private static final int PENDING = 0, EXPIRED = 1, CANCELLED = 2;
+
+        private final long deadline;
+        private final Runnable action;
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private Subscription previous, next;
+        private long rounds;
+        private int bucket = -1;
+
+        private Subscription(long deadline, Runnable action) {
+            this.deadline = deadline;
+            this.action = action;
+        }
+
+        /**
+         * Cancels this subscription if it has not yet run. It is removed from
+         * the wheel at the start of the next tick.
+         *
+         * @return true if the subscription was cancelled, else false
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(PENDING, CANCELLED)) {
+                cancelled.add(this);
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return whether the action has run
+         */
+        public boolean isExpired() {
+            return state.get() == EXPIRED;
+        }
+
+        /**
+         * @return whether this subscription has been cancelled
+         */
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+    }
+
+}
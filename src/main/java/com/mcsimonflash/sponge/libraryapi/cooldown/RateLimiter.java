@@ -0,0 +1,123 @@
+package com.mcsimonflash.sponge.libraryapi.cooldown;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A rate limiter allowing a number of uses (charges) per period for each key,
+ * as opposed to {@link CooldownService} which allows a single use followed by
+ * a fixed wait.
+ *
+ * This behaves as a token bucket which holds up to the given number of
+ * charges and regains one charge every period / charges. Rather than storing
+ * a charge count and a refill time, each key stores only the time at which
+ * its bucket will be full again; charges are computed lazily from this time
+ * when the key is used. A key therefore costs a single {@link AtomicLong} and
+ * acquiring a charge is a single compare-and-set.
+ *
+ * Keys with a full bucket hold no information and can be removed through
+ * {@link #cleanUp()}.
+ *
+ * @param <K> the type of key, such as a player's UUID
+ */
+public class RateLimiter<K> {
+
+    private final Map<K, AtomicLong> buckets = Maps.newConcurrentMap();
+    private final int charges;
+    private final long period;
+    private final long interval;
+
+    /**
+     * Creates a new instance allowing the given number of charges per period.
+     *
+     * @param charges the number of charges per period
+     * @param period the length of the period
+     * @param unit the unit of the period
+     */
+    public RateLimiter(int charges, long period, TimeUnit unit) {
+        Preconditions.checkArgument(charges > 0, "charges must be positive");
+        Preconditions.checkArgument(period > 0, "period must be positive");
+        this.charges = charges;
+        this.period = unit.toNanos(period);
+        this.interval = this.period / charges;
+    }
+
+    /**
+     * Attempts to use a charge for the given key.
+     *
+     * @param key the key
+     * @return 0 if a charge was used, else the time until the next charge is
+     *         available in milliseconds
+     */
+    public long tryAcquire(K key) {
+        long now = System.nanoTime();
+        AtomicLong full = buckets.get(key);
+        if (full == null) {
+            full = buckets.putIfAbsent(key, new AtomicLong(now + interval));
+            if (full == null) {
+                return 0;
+            }
+        }
+        while (true) {
+            long current = full.get();
+            long next = (current - now > 0 ? current : now) + interval;
+            long excess = next - now - period;
+            if (excess > 0) {
+                return TimeUnit.NANOSECONDS.toMillis(excess + TimeUnit.MILLISECONDS.toNanos(1) - 1);
+            } else if (full.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of charges currently available to the given key.
+     *
+     * @param key the key
+     * @return the available charges
+     */
+    public int getCharges(K key) {
+        AtomicLong full = buckets.get(key);
+        if (full == null) {
+            return charges;
+        }
+        long pending = full.get() - System.nanoTime();
+        return pending > 0 ? (int) ((period - pending) / interval) : charges;
+    }
+
+    /**
+     * Restores all charges to the given key.
+     *
+     * @param key the key
+     */
+    public void reset(K key) {
+        buckets.remove(key);
+    }
+
+    /**
+     * Removes every key whose bucket is full, as these are equivalent to keys
+     * which have never been used. A charge used by a key at the same time as
+     * it is removed may be forgotten, so this is best run periodically rather
+     * than alongside frequent use.
+     *
+     * @return the number of removed keys
+     */
+    public int cleanUp() {
+        long now = System.nanoTime();
+        int removed = 0;
+        Iterator<AtomicLong> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().get() - now <= 0) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+}
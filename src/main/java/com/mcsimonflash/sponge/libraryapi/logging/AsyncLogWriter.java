@@ -0,0 +1,262 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Sets;
+import org.slf4j.Logger;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes log messages to {@link LogFile}s on a single background thread so
+ * that disk latency is not added to the thread logging the message.
+ *
+ * Messages are published into a bounded ring of preallocated slots. Each
+ * producer claims a sequence number with a compare-and-set, fills the slot
+ * for that sequence and then publishes it by writing the sequence to the
+ * slot. The consumer thread writes published messages in order. When the
+ * files are flushed is left to the {@link FlushPolicy} of each file, so that
+ * batching is kept under a steady trickle of messages; every file written to
+ * is only flushed by the consumer once the writer is closed.
+ *
+ * When the ring is full, the {@link OverflowPolicy} decides whether the
+ * producer waits for space or the message is dropped. {@link LogLevel#ERROR}
+ * messages are never dropped; they wait for space under every policy. The
+ * number of dropped messages is reported through the wrapped logger.
+ *
+ * Once {@link #close()} is called, the remaining messages are written and
+ * later messages are written on the calling thread. A message that fails to
+ * be written is reported through the wrapped logger without stopping the
+ * consumer; should the consumer thread die regardless, later messages are
+ * also written on the calling thread.
+ */
+public class AsyncLogWriter implements Closeable {
+
+    /**
+     * Decides what happens to a message published while the ring is full.
+     */
+    public enum OverflowPolicy {
+
+        /**
+         * Waits until the consumer frees a slot.
+         */
+        BLOCK,
+
+        /**
+         * Drops every message except errors.
+         */
+        DROP,
+
+        /**
+         * Drops debug and info messages; warnings and errors wait.
+         */
+        DROP_BELOW_WARN
+
+    }
+
+    private final Logger logger;
+    private final Slot[] ring;
+    private final int mask;
+    private final OverflowPolicy policy;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Thread consumer;
+    private volatile long consumed;
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new instance and starts its consumer thread.
+     *
+     * @param logger the logger used to report write failures and drops
+     * @param capacity the number of slots in the ring, a power of two
+     * @param policy the policy for messages published to a full ring
+     */
+    public AsyncLogWriter(Logger logger, int capacity, OverflowPolicy policy) {
+        Preconditions.checkArgument(capacity > 0 && (capacity & (capacity - 1)) == 0, "capacity must be a power of two");
+        this.logger = logger;
+        this.ring = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new Slot(i - capacity);
+        }
+        this.mask = capacity - 1;
+        this.policy = policy;
+        this.consumer = new Thread(this::consume, "LibraryAPI async log writer");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Registers a listener closing this writer when the server is stopping.
+     *
+     * @param plugin the plugin registering the listener
+     */
+    public void closeOnShutdown(Object plugin) {
+        Sponge.getEventManager().registerListener(plugin, GameStoppingServerEvent.class, event -> close());
+    }
+
+    /**
+     * Publishes a message to be written to the given file.
+     *
+     * @param file the file to write the message to
+     * @param level the level of the message
+     * @param msg the message
+     * @return false if the message was dropped, else true
+     */
+    public boolean publish(LogFile file, LogLevel level, String msg) {
+        if (!running) {
+            write(file, level, msg);
+            return true;
+        }
+        boolean droppable = policy == OverflowPolicy.DROP ? level != LogLevel.ERROR
+                : policy == OverflowPolicy.DROP_BELOW_WARN && level.compareTo(LogLevel.WARN) < 0;
+        long sequence;
+        while (true) {
+            sequence = claimed.get();
+            if (sequence - consumed >= ring.length) {
+                if (droppable) {
+                    dropped.incrementAndGet();
+                    return false;
+                } else if (!running || !consumer.isAlive()) {
+                    write(file, level, msg);
+                    return true;
+                }
+                LockSupport.parkNanos(1000);
+            } else if (claimed.compareAndSet(sequence, sequence + 1)) {
+                break;
+            }
+        }
+        Slot slot = ring[(int) (sequence & mask)];
+        slot.file = file;
+        slot.level = level;
+        slot.msg = msg;
+        slot.sequence = sequence;
+        if (!running) {
+            awaitConsumer();
+            if (slot.msg != null && !consumer.isAlive()) {
+                write(slot.file, slot.level, slot.msg);
+                slot.file = null;
+                slot.msg = null;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the total number of dropped messages
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return the number of messages waiting to be written
+     */
+    public long getBacklog() {
+        return claimed.get() - consumed;
+    }
+
+    /**
+     * The loop run by the consumer thread. Messages are written in sequence
+     * order; when no message is published, the thread parks briefly. The
+     * files written to are flushed once the writer is closed.
+     */
+    private void consume() {
+        Set<LogFile> written = Sets.newIdentityHashSet();
+        long next = consumed;
+        long reported = 0;
+        try {
+            while (running || next != claimed.get()) {
+                Slot slot = ring[(int) (next & mask)];
+                if (slot.sequence == next) {
+                    write(slot.file, slot.level, slot.msg);
+                    written.add(slot.file);
+                    slot.file = null;
+                    slot.msg = null;
+                    consumed = ++next;
+                } else {
+                    long drops = dropped.get();
+                    if (drops != reported) {
+                        logger.warn("Dropped " + (drops - reported) + " log messages because the async log writer was full.");
+                        reported = drops;
+                    }
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            }
+            flush(written);
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Writes a message to the file, reporting any failure through the logger
+     * so that a single message can never stop the consumer.
+     */
+    private void write(LogFile file, LogLevel level, String msg) {
+        try {
+            file.log(msg, level);
+        } catch (IOException | RuntimeException e) {
+            logger.error("Unable to save log message to file. Message: " + msg, e);
+        }
+    }
+
+    private void flush(Set<LogFile> written) {
+        for (LogFile file : written) {
+            try {
+                file.flush();
+            } catch (IOException | RuntimeException e) {
+                logger.error("Unable to flush log file.", e);
+            }
+        }
+        written.clear();
+    }
+
+    /**
+     * Stops accepting messages into the ring and waits for the consumer to
+     * write every published message.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(consumer);
+        awaitConsumer();
+    }
+
+    /**
+     * Waits for the consumer thread to finish, up to ten seconds. A message
+     * published while the writer is closing may be claimed after the consumer
+     * has stopped; the producer then writes it itself once this returns.
+     */
+    private void awaitConsumer() {
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A preallocated entry in the ring. The sequence is written last and
+     * read first, which publishes the file, level and message to the
+     * consumer.
+     */
+    private static final class Slot {
+
+        private LogFile file;
+        private LogLevel level;
+        private String msg;
+        private volatile long sequence;
+
+        private Slot(long sequence) {
+            this.sequence = sequence;
+        }
+
+    }
+
+}
@@ -0,0 +1,271 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import com.google.common.collect.Maps;
+import com.google.common.io.CountingInputStream;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+
+/**
+ * Turns files written by {@link BinaryLogWriter} back into text, one line per
+ * event in the form {@code [time] [thread/LEVEL]: message}, followed by the
+ * stack trace of the event's throwable if it has one.
+ *
+ * This can be run from the command line with the path of the binary file and
+ * optionally the path of the text file to write; without it, the text is
+ * written to standard output.
+ *
+ * A record which cannot be decoded, such as a partial record left by a crash
+ * and followed by the header of the next session, is reported with a line in
+ * the output, and decoding resumes at the next header. This includes a
+ * record whose lengths run past the end of the stream, which is otherwise
+ * indistinguishable from one truncated at the end; if no header follows, the
+ * record is ignored. Records are limited to {@value #MAX_RECORD_SIZE} bytes,
+ * so that decoding can always return to the start of a corrupt record.
+ */
+public final class BinaryLogDecoder {
+
+    private static final int MAX_RECORD_SIZE = 64 << 20;
+    private static final int MAX_ARGUMENTS = 1 << 16;
+    private static final DateTimeFormatter TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS").withZone(ZoneId.systemDefault());
+    private static final LogLevel[] LEVELS = LogLevel.values();
+
+    private final Map<Integer, String> formats = Maps.newHashMap();
+    private final Map<Integer, String> threads = Maps.newHashMap();
+    private CountingInputStream counter;
+    private long recordStart;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: BinaryLogDecoder <binary log> [output]");
+            System.exit(1);
+        }
+        try (InputStream in = Files.newInputStream(Paths.get(args[0]));
+             Writer out = args.length > 1 ? Files.newBufferedWriter(Paths.get(args[1])) : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+            new BinaryLogDecoder().decode(in, out);
+        }
+    }
+
+    /**
+     * Decodes every record of the stream and writes the events as text. A
+     * truncated record at the end of the stream, as left by a crash, is
+     * ignored.
+     *
+     * A decoder keeps the state of the stream it decodes, so it must not
+     * decode several streams at once.
+     *
+     * @param stream the binary log
+     * @param out the writer for the text
+     * @throws IOException if the stream could not be read or does not begin
+     *     with a binary log header
+     */
+    public void decode(InputStream stream, Writer out) throws IOException {
+        counter = new CountingInputStream(new BufferedInputStream(stream));
+        DataInputStream in = new DataInputStream(counter);
+        boolean started = false;
+        try {
+            while (true) {
+                in.mark(MAX_RECORD_SIZE + 64);
+                recordStart = counter.getCount();
+                int tag = in.read();
+                if (tag < 0) {
+                    break;
+                }
+                try {
+                    if (!started && tag != (BinaryLogWriter.MAGIC >>> 24)) {
+                        throw new IOException("Not a binary log.");
+                    }
+                    readRecord(tag, in, out);
+                    started = true;
+                } catch (CorruptLogException | EOFException e) {
+                    if (!started) {
+                        throw new IOException("Not a binary log.", e);
+                    }
+                    String reason = e instanceof EOFException ? "record runs past the end of the log" : e.getMessage();
+                    resync(in);
+                    out.write("[Skipped corrupt records: " + reason + "]" + System.lineSeparator());
+                }
+            }
+        } catch (EOFException ignored) {}
+        out.flush();
+    }
+
+    private void readRecord(int tag, DataInputStream in, Writer out) throws IOException {
+        if (tag == BinaryLogWriter.EVENT) {
+            readEvent(in, out);
+        } else if (tag == BinaryLogWriter.FORMAT) {
+            formats.put(in.readInt(), readString(in));
+        } else if (tag == BinaryLogWriter.THREAD) {
+            threads.put(in.readInt(), readString(in));
+        } else if (tag == (BinaryLogWriter.MAGIC >>> 24)) {
+            int magic = tag << 24 | in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            if (magic != BinaryLogWriter.MAGIC) {
+                throw new CorruptLogException("invalid header");
+            }
+            readHeader(in);
+        } else {
+            throw new CorruptLogException("unknown record type " + tag);
+        }
+    }
+
+    /**
+     * Skips to the header following a corrupt record and reads it. The stream
+     * is first reset to the start of the corrupt record, so a header read as
+     * part of it is not missed. Since no more than the maximum record size is
+     * read from a record, the mark is always still valid.
+     *
+     * @throws EOFException if no header follows
+     */
+    private void resync(DataInputStream in) throws IOException {
+        in.reset();
+        in.readByte();
+        int window = 0;
+        while (true) {
+            window = window << 8 | in.readUnsignedByte();
+            if (window == BinaryLogWriter.MAGIC) {
+                in.mark(MAX_RECORD_SIZE + 64);
+                try {
+                    readHeader(in);
+                    return;
+                } catch (CorruptLogException e) {
+                    in.reset();
+                    window = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the rest of the header written by each writer, which resets the
+     * interned formats and threads.
+     */
+    private void readHeader(DataInputStream in) throws IOException {
+        int version = in.readInt();
+        if (version != BinaryLogWriter.VERSION) {
+            throw new CorruptLogException("unsupported binary log version " + version);
+        }
+        in.readLong();
+        formats.clear();
+        threads.clear();
+    }
+
+    private void readEvent(DataInputStream in, Writer out) throws IOException {
+        long time = in.readLong();
+        int ordinal = in.readUnsignedByte();
+        String format = formats.get(in.readInt());
+        String thread = threads.get(in.readInt());
+        int count = in.readInt();
+        if (ordinal >= LEVELS.length || format == null || thread == null || count < 0 || count > MAX_ARGUMENTS) {
+            throw new CorruptLogException("invalid event");
+        }
+        LogLevel level = LEVELS[ordinal];
+        Object[] args = new Object[count];
+        for (int i = 0; i < count; i++) {
+            checkSize(0);
+            args[i] = readArgument(in);
+        }
+        LogFormatter formatter = LogFormatter.get();
+        String msg = formatter.format(format, count, null, null, args);
+        out.write("[" + TIME.format(Instant.ofEpochMilli(time)) + "] [" + thread + "/" + level + "]: " + msg + System.lineSeparator());
+        Throwable t = formatter.takeThrowable();
+        if (t != null) {
+            out.write(t.getMessage());
+        }
+    }
+
+    private Object readArgument(DataInputStream in) throws IOException {
+        int type = in.readUnsignedByte();
+        switch (type) {
+            case BinaryLogWriter.NULL:
+                return null;
+            case BinaryLogWriter.INT:
+                return in.readInt();
+            case BinaryLogWriter.LONG:
+                return in.readLong();
+            case BinaryLogWriter.DOUBLE:
+                return in.readDouble();
+            case BinaryLogWriter.FLOAT:
+                return in.readFloat();
+            case BinaryLogWriter.BOOLEAN:
+                return in.readBoolean();
+            case BinaryLogWriter.CHAR:
+                return in.readChar();
+            case BinaryLogWriter.STRING:
+                return readString(in);
+            case BinaryLogWriter.THROWABLE:
+                return new DecodedThrowable(readString(in));
+            default:
+                throw new CorruptLogException("unknown argument type " + type);
+        }
+    }
+
+    private String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new CorruptLogException("invalid string length " + length);
+        }
+        checkSize(length);
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Fails if reading the given number of bytes more would make the current
+     * record larger than the maximum record size. Everything else read from
+     * a record is at most a few bytes between checks, which the mark allows
+     * for.
+     *
+     * @param length the number of bytes about to be read
+     */
+    private void checkSize(int length) throws CorruptLogException {
+        if (counter.getCount() - recordStart + length > MAX_RECORD_SIZE) {
+            throw new CorruptLogException("record exceeds " + MAX_RECORD_SIZE + " bytes");
+        }
+    }
+
+    /**
+     * A throwable read back from its stack trace, so that it is treated as
+     * the throwable of the message when formatted. The message holds the
+     * full stack trace.
+     */
+    private static final class DecodedThrowable extends Throwable {
+
+        private DecodedThrowable(String trace) {
+            super(trace, null, false, false);
+        }
+
+        @Override
+        public String toString() {
+            String trace = getMessage();
+            int end = trace.indexOf(System.lineSeparator());
+            return end >= 0 ? trace.substring(0, end) : trace;
+        }
+
+    }
+
+    /**
+     * Thrown when the data read does not form a valid record.
+     */
+    private static final class CorruptLogException extends IOException {
+
+        private CorruptLogException(String message) {
+            super(message);
+        }
+
+    }
+
+}
@@ -0,0 +1,353 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.scheduler.Task;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes log events as compact binary records instead of text, so that no
+ * message is formatted when the event is logged. The files are turned back
+ * into text by {@link BinaryLogDecoder}.
+ *
+ * Each event stores the id of its format, the time, the level, the id of the
+ * thread name and the raw values of its arguments. Formats and thread names
+ * are interned: the first time one is seen, a definition record mapping it
+ * to a new id is written before the event. Only format strings are meant to
+ * be interned; a message without arguments should be written as the single
+ * argument of the format {@code {}}. Once {@value #MAX_FORMATS} formats are
+ * interned, events with a new format are formatted and written that way. Once
+ * {@value #MAX_THREADS} thread names are interned, as pools of uniquely named
+ * threads do, a new header is written and both are interned anew.
+ *
+ * Primitive wrappers and strings are stored by value. Other arguments are
+ * stored as their string value and a trailing {@link Throwable} is stored as
+ * its stack trace. Each event is encoded together with its definitions before
+ * it is added to the buffer, so the file is only ever written at the end of a
+ * record. Records are written when the buffer fills, on {@link #flush()} and
+ * on {@link #close()}; see {@link #start(Object, long, TimeUnit)}.
+ *
+ * The file is appended to. Each writer begins with a header which resets the
+ * ids, so a file may hold the records of several sessions. If a crash leaves
+ * a partial record, {@link BinaryLogDecoder} skips to the next header. Writing
+ * to a closed writer fails with a {@link ClosedChannelException} rather than
+ * silently dropping the event.
+ */
+public class BinaryLogWriter implements Closeable {
+
+    static final int MAGIC = 0x4C424C31;
+    static final int VERSION = 1;
+
+    static final byte FORMAT = 1, THREAD = 2, EVENT = 3;
+    static final byte NULL = 0, INT = 1, LONG = 2, DOUBLE = 3, FLOAT = 4, BOOLEAN = 5, CHAR = 6, STRING = 7, THROWABLE = 8;
+
+    /**
+     * The maximum number of interned formats.
+     */
+    public static final int MAX_FORMATS = 4096;
+
+    /**
+     * The maximum number of interned thread names.
+     */
+    public static final int MAX_THREADS = 1024;
+
+    private static final String PLAIN = "{}";
+    private static final int MAX_RETAINED_CAPACITY = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Map<String, Integer> formats = Maps.newHashMap();
+    private final Map<String, Integer> threads = Maps.newHashMap();
+    private final StringBuilder builder = new StringBuilder();
+    private RecordBuffer bytes = new RecordBuffer();
+    private DataOutputStream record = new DataOutputStream(bytes);
+
+    /**
+     * Creates a new instance appending to the file at the given path with a
+     * buffer of 64 KiB.
+     *
+     * @param path the path to the file
+     * @throws IOException if the file could not be opened
+     */
+    public BinaryLogWriter(Path path) throws IOException {
+        this(path, 64 * 1024);
+    }
+
+    /**
+     * Creates a new instance appending to the file at the given path.
+     *
+     * @param path the path to the file
+     * @param bufferSize the size of the buffer in bytes, at least 64
+     * @throws IOException if the file could not be opened
+     */
+    public BinaryLogWriter(Path path, int bufferSize) throws IOException {
+        Preconditions.checkArgument(bufferSize >= 64, "bufferSize must be at least 64");
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(System.currentTimeMillis());
+    }
+
+    /**
+     * Writes an event with a parameterized message. If {@code args} is not
+     * null, it holds every argument and the fixed arguments are ignored.
+     *
+     * @param level the level of the event
+     * @param format the format of the message
+     * @param count the number of arguments
+     * @param first the first argument
+     * @param second the second argument
+     * @param args every argument, or null
+     * @throws IOException if the buffer could not be written or the writer is
+     *     closed
+     */
+    public synchronized void write(LogLevel level, String format, int count, Object first, Object second, Object[] args) throws IOException {
+        if (!channel.isOpen()) {
+            throw new ClosedChannelException();
+        }
+        long time = System.currentTimeMillis();
+        if (format == null) {
+            format = "null";
+        }
+        if (formats.size() >= MAX_FORMATS && !formats.containsKey(format) && !format.equals(PLAIN)) {
+            LogFormatter formatter = LogFormatter.get();
+            String msg = formatter.format(format, count, first, second, args);
+            Throwable t = formatter.takeThrowable();
+            write(level, PLAIN, t != null ? 2 : 1, msg, t, null);
+            return;
+        }
+        bytes.reset();
+        String thread = Thread.currentThread().getName();
+        if (threads.size() >= MAX_THREADS && !threads.containsKey(thread)) {
+            formats.clear();
+            threads.clear();
+            record.writeInt(MAGIC);
+            record.writeInt(VERSION);
+            record.writeLong(time);
+        }
+        String newFormat = null, newThread = null;
+        try {
+            Integer formatId = formats.get(format);
+            if (formatId == null) {
+                formatId = define(formats, FORMAT, newFormat = format);
+            }
+            Integer threadId = threads.get(thread);
+            if (threadId == null) {
+                threadId = define(threads, THREAD, newThread = thread);
+            }
+            record.writeByte(EVENT);
+            record.writeLong(time);
+            record.writeByte(level.ordinal());
+            record.writeInt(formatId);
+            record.writeInt(threadId);
+            record.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                Object arg = args != null ? args[i] : i == 0 ? first : second;
+                writeArgument(arg, i == count - 1);
+            }
+            commit();
+        } catch (IOException | RuntimeException e) {
+            if (newFormat != null) {
+                formats.remove(newFormat);
+            }
+            if (newThread != null) {
+                threads.remove(newThread);
+            }
+            throw e;
+        } finally {
+            if (bytes.capacity() > MAX_RETAINED_CAPACITY) {
+                bytes = new RecordBuffer();
+                record = new DataOutputStream(bytes);
+            }
+        }
+    }
+
+    /**
+     * Encodes a definition record for the value under a new id. The id is
+     * removed again by {@link #write} if the record is not committed.
+     */
+    private int define(Map<String, Integer> ids, byte tag, String value) throws IOException {
+        int id = ids.size();
+        ids.put(value, id);
+        record.writeByte(tag);
+        record.writeInt(id);
+        writeString(value);
+        return id;
+    }
+
+    private void writeArgument(Object arg, boolean last) throws IOException {
+        if (arg == null) {
+            record.writeByte(NULL);
+        } else if (arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+            record.writeByte(INT);
+            record.writeInt(((Number) arg).intValue());
+        } else if (arg instanceof Long) {
+            record.writeByte(LONG);
+            record.writeLong((Long) arg);
+        } else if (arg instanceof Double) {
+            record.writeByte(DOUBLE);
+            record.writeDouble((Double) arg);
+        } else if (arg instanceof Float) {
+            record.writeByte(FLOAT);
+            record.writeFloat((Float) arg);
+        } else if (arg instanceof Boolean) {
+            record.writeByte(BOOLEAN);
+            record.writeBoolean((Boolean) arg);
+        } else if (arg instanceof Character) {
+            record.writeByte(CHAR);
+            record.writeChar((Character) arg);
+        } else if (arg instanceof String) {
+            record.writeByte(STRING);
+            writeString((String) arg);
+        } else if (last && arg instanceof Throwable) {
+            StringWriter sw = new StringWriter();
+            ((Throwable) arg).printStackTrace(new PrintWriter(sw, true));
+            record.writeByte(THROWABLE);
+            writeString(sw.toString());
+        } else {
+            builder.setLength(0);
+            LogFormatter.append(builder, arg);
+            record.writeByte(STRING);
+            writeString(builder.toString());
+        }
+    }
+
+    /**
+     * Writes the length and UTF-8 bytes of the string.
+     */
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        record.writeInt(bytes.length);
+        record.write(bytes);
+    }
+
+    /**
+     * Adds the encoded record to the buffer, draining the buffer first if the
+     * record does not fit. A record larger than the buffer is written to the
+     * channel directly.
+     */
+    private void commit() throws IOException {
+        ByteBuffer encoded = bytes.wrap();
+        if (buffer.remaining() < encoded.remaining()) {
+            if (buffer.position() > 0) {
+                drain();
+            }
+            if (encoded.remaining() > buffer.capacity()) {
+                while (encoded.hasRemaining()) {
+                    channel.write(encoded);
+                }
+                return;
+            }
+        }
+        buffer.put(encoded);
+    }
+
+    /**
+     * Writes the buffer to the channel. If the write fails, the bytes not yet
+     * written are kept at the start of the buffer, so the buffer is always
+     * left ready for the next record.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    /**
+     * Writes any buffered records to the file.
+     *
+     * @throws IOException if the buffer could not be written
+     */
+    public synchronized void flush() throws IOException {
+        if (buffer.position() > 0 && channel.isOpen()) {
+            drain();
+        }
+    }
+
+    /**
+     * Submits an async task flushing this writer at the given interval and
+     * registers a listener closing it when the server is stopping.
+     *
+     * @param plugin the plugin owning the task
+     * @param interval the interval between flushes
+     * @param unit the unit of the interval
+     * @return the submitted task
+     */
+    public Task start(Object plugin, long interval, TimeUnit unit) {
+        Sponge.getEventManager().registerListener(plugin, GameStoppingServerEvent.class, event -> {
+            try {
+                close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+        return Task.builder()
+                .async()
+                .interval(interval, unit)
+                .name("BinaryLogWriter flush task")
+                .execute(() -> {
+                    try {
+                        flush();
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                })
+                .submit(plugin);
+    }
+
+    /**
+     * Flushes and closes the file.
+     *
+     * @throws IOException if the file could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * The bytes of the record being encoded, exposed without copying.
+     */
+    private static final class RecordBuffer extends ByteArrayOutputStream {
+
+        private RecordBuffer() {
+            super(256);
+        }
+
+        private int capacity() {
+            return buf.length;
+        }
+
+        private ByteBuffer wrap() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Decides when a {@link LogFile} writes its buffered messages to disk,
+ * trading durability for throughput.
+ *
+ * Messages are encoded into a buffer of {@link #getBufferSize()} bytes. The
+ * buffer is written once it holds {@link #getFlushBytes()} bytes, once
+ * {@link #getFlushMillis()} have passed since the last write, and immediately
+ * after an {@link LogLevel#ERROR} message if {@link #isFlushOnError()}. If
+ * {@link #isSync()}, every write is followed by an fsync so that messages
+ * survive an operating system crash rather than only a server crash.
+ */
+public class FlushPolicy {
+
+    private static final FlushPolicy DEFAULT = new FlushPolicy(64 * 1024, 64 * 1024, 1000, true, false);
+    private static final FlushPolicy IMMEDIATE = new FlushPolicy(8 * 1024, 1, 0, true, true);
+
+    private final int bufferSize;
+    private final int flushBytes;
+    private final long flushMillis;
+    private final boolean flushOnError;
+    private final boolean sync;
+
+    /**
+     * Creates a new instance with the given settings.
+     *
+     * @param bufferSize the size of the buffer, in bytes
+     * @param flushBytes the number of buffered bytes which causes a flush
+     * @param flushMillis the maximum time a message stays buffered, or 0 for
+     *                    no limit
+     * @param flushOnError whether to flush immediately after an error
+     * @param sync whether to fsync after every flush
+     */
+    public FlushPolicy(int bufferSize, int flushBytes, long flushMillis, boolean flushOnError, boolean sync) {
+        Preconditions.checkArgument(bufferSize >= 64, "bufferSize must be at least 64 bytes");
+        Preconditions.checkArgument(flushBytes > 0 && flushBytes <= bufferSize, "flushBytes must be between 1 and bufferSize");
+        Preconditions.checkArgument(flushMillis >= 0, "flushMillis must not be negative");
+        this.bufferSize = bufferSize;
+        this.flushBytes = flushBytes;
+        this.flushMillis = flushMillis;
+        this.flushOnError = flushOnError;
+        this.sync = sync;
+    }
+
+    /**
+     * @return a policy with a 64KiB buffer flushed when full, every second
+     *         and after every error, without fsync
+     */
+    public static FlushPolicy defaults() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return a policy flushing and syncing after every message
+     */
+    public static FlushPolicy immediate() {
+        return IMMEDIATE;
+    }
+
+    /**
+     * @return the size of the buffer, in bytes
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @return the number of buffered bytes which causes a flush
+     */
+    public int getFlushBytes() {
+        return flushBytes;
+    }
+
+    /**
+     * @return the maximum time a message stays buffered, or 0
+     */
+    public long getFlushMillis() {
+        return flushMillis;
+    }
+
+    /**
+     * @return whether to flush immediately after an error
+     */
+    public boolean isFlushOnError() {
+        return flushOnError;
+    }
+
+    /**
+     * @return whether to fsync after every flush
+     */
+    public boolean isSync() {
+        return sync;
+    }
+
+}
@@ -1,9 +1,32 @@
 package com.mcsimonflash.sponge.libraryapi.logging;
 
-import java.io.BufferedWriter;
+import com.google.common.collect.Lists;
+
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
 
 /*
  * IO is not my expertise. Review of this to verify it's functionality and make
@@ -11,35 +34,373 @@ import java.nio.file.Path;
  */
 /**
  * A file for logging message.
+ *
+ * Messages are appended to the file, so existing logs are kept across
+ * restarts. The file may be rolled over according to a {@link RollingPolicy};
+ * rolled files are named {@code name.date.index.ext} and are compressed and
+ * pruned on a background thread so that rolling never waits on compression.
+ * Compression has a thread of its own, so that compressing a large file never
+ * delays the timed flushes of other files. If a file cannot be rolled, it is
+ * reopened and written to until the next attempt succeeds.
+ *
+ * Messages are encoded as UTF-8 into a reusable direct buffer, which is
+ * written to a {@link FileChannel} in large batches according to a
+ * {@link FlushPolicy}. Messages still buffered when the server crashes are
+ * lost, so the policy decides how long a message may stay buffered.
  */
 public class LogFile {
 
-    private final BufferedWriter writer;
+    private static final ScheduledExecutorService BACKGROUND = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "LibraryAPI log file background");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final ExecutorService COMPRESSOR = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "LibraryAPI log file compression");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final byte[] SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+
+    private final Path path;
+    private final RollingPolicy policy;
+    private final FlushPolicy flushPolicy;
+    private final String name, extension;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ScheduledFuture<?> flusher;
+    private FileChannel channel;
+    private LocalDate date;
+    private long size, lastFlush;
+    private int index = 1;
+    private volatile LogMetrics metrics;
 
     /**
-     * Create a new instance for the given path
+     * Create a new instance for the given path which is never rolled over.
      *
      * @param path the path to the file
      * @throws IOException if the writer could not be initialized
      */
     public LogFile(Path path) throws IOException {
-        this.writer = Files.newBufferedWriter(path);
+        this(path, RollingPolicy.none(), FlushPolicy.defaults());
+    }
+
+    /**
+     * Create a new instance for the given path which is rolled over according
+     * to the given {@link RollingPolicy}.
+     *
+     * @param path the path to the file
+     * @param policy the policy for rolling the file
+     * @throws IOException if the writer could not be initialized
+     */
+    public LogFile(Path path, RollingPolicy policy) throws IOException {
+        this(path, policy, FlushPolicy.defaults());
+    }
+
+    /**
+     * Create a new instance for the given path which is rolled over according
+     * to the given {@link RollingPolicy} and flushed according to the given
+     * {@link FlushPolicy}.
+     *
+     * If the flush policy has a time limit, a task on the background thread
+     * flushes the file when it has been idle for that long, until the file
+     * is closed.
+     *
+     * @param path the path to the file
+     * @param policy the policy for rolling the file
+     * @param flushPolicy the policy for flushing the file
+     * @throws IOException if the channel could not be opened
+     */
+    public LogFile(Path path, RollingPolicy policy, FlushPolicy flushPolicy) throws IOException {
+        this.path = path;
+        this.policy = policy;
+        this.flushPolicy = flushPolicy;
+        this.buffer = ByteBuffer.allocateDirect(flushPolicy.getBufferSize());
+        String fileName = path.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        this.name = dot > 0 ? fileName.substring(0, dot) : fileName;
+        this.extension = dot > 0 ? fileName.substring(dot) : "";
+        if (Files.exists(path)) {
+            size = Files.size(path);
+            date = Instant.ofEpochMilli(Files.getLastModifiedTime(path).toMillis()).atZone(ZoneId.systemDefault()).toLocalDate();
+        } else {
+            date = LocalDate.now();
+        }
+        this.channel = open();
+        this.lastFlush = System.currentTimeMillis();
+        long millis = flushPolicy.getFlushMillis();
+        this.flusher = millis > 0 ? BACKGROUND.scheduleWithFixedDelay(this::flushIfIdle, millis, millis, TimeUnit.MILLISECONDS) : null;
+    }
+
+    /**
+     * Sets the {@link LogMetrics} recording the bytes written to this file,
+     * the latency of writes and flushes and failures.
+     *
+     * @param metrics the metrics, or null
+     */
+    public void setMetrics(LogMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
     }
 
     /**
      * Logs a message to the file.
      *
+     * @see #log(String, LogLevel)
+     *
      * @param msg the message to be logged
      * @throws IOException if the message could not be logged
      */
     public void log(String msg) throws IOException {
+        log(msg, LogLevel.INFO);
+    }
+
+    /**
+     * Logs a message at the given level to the file, rolling the file over
+     * first if required by the {@link RollingPolicy}. The message is encoded
+     * into the buffer and written when required by the {@link FlushPolicy}.
+     *
+     * @param msg the message to be logged
+     * @param level the level of the message
+     * @throws IOException if the message could not be logged
+     */
+    public synchronized void log(String msg, LogLevel level) throws IOException {
+        LogMetrics metrics = this.metrics;
+        long start = metrics != null ? System.nanoTime() : 0;
+        long before = size;
         try {
-            writer.write(msg);
-            writer.newLine();
+            if (shouldRoll(msg.length() + SEPARATOR.length)) {
+                roll();
+                before = 0;
+            }
+            encode(msg);
+            long now = System.currentTimeMillis();
+            if (buffer.position() >= flushPolicy.getFlushBytes()
+                    || level == LogLevel.ERROR && flushPolicy.isFlushOnError()
+                    || flushPolicy.getFlushMillis() > 0 && now - lastFlush >= flushPolicy.getFlushMillis()) {
+                flush();
+            }
         } catch (IOException e){
-            writer.close();
+            if (metrics != null) {
+                metrics.recordFailure();
+            }
             throw e;
         }
+        if (metrics != null) {
+            metrics.recordWrite(size - before, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Encodes the message and a line separator into the buffer, writing the
+     * buffer to the channel whenever it fills.
+     *
+     * @param msg the message to be encoded
+     * @throws IOException if the buffer could not be written
+     */
+    private void encode(String msg) throws IOException {
+        int start = buffer.position();
+        long written = 0;
+        CharBuffer chars = CharBuffer.wrap(msg);
+        encoder.reset();
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, true);
+            if (result.isOverflow()) {
+                written += buffer.position() - start;
+                write();
+                start = 0;
+            } else {
+                break;
+            }
+        }
+        while (encoder.flush(buffer).isOverflow()) {
+            written += buffer.position() - start;
+            write();
+            start = 0;
+        }
+        if (buffer.remaining() < SEPARATOR.length) {
+            written += buffer.position() - start;
+            write();
+            start = 0;
+        }
+        buffer.put(SEPARATOR);
+        size += written + buffer.position() - start;
+    }
+
+    /**
+     * Writes the buffer to the channel and clears it. If the write fails, the
+     * bytes not yet written are kept at the start of the buffer.
+     *
+     * @throws IOException if the buffer could not be written
+     */
+    private void write() throws IOException {
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    /**
+     * Flushes the file if it has not been flushed within the time limit of
+     * the {@link FlushPolicy}. Run by the background thread.
+     */
+    private synchronized void flushIfIdle() {
+        if (channel.isOpen() && buffer.position() > 0 && System.currentTimeMillis() - lastFlush >= flushPolicy.getFlushMillis()) {
+            try {
+                flush();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns whether the file must be rolled before writing the given number
+     * of characters. Since the size is tracked in bytes, this may slightly
+     * underestimate the length of messages with non-ASCII characters.
+     */
+    private boolean shouldRoll(int length) {
+        if (policy.isDaily() && !date.equals(LocalDate.now())) {
+            return true;
+        }
+        return policy.getMaxSize() > 0 && size > 0 && size + length > policy.getMaxSize();
+    }
+
+    /**
+     * Closes the current file, moves it to the next free rolled name and opens
+     * a new file. Compression and pruning are submitted to the compression
+     * thread. The file is reopened even if it could not be moved, so a failed
+     * roll does not stop later messages from being written.
+     *
+     * @throws IOException if the file could not be moved or reopened
+     */
+    private void roll() throws IOException {
+        write();
+        Path target;
+        do {
+            target = path.resolveSibling(name + "." + date + "." + index++ + extension);
+        } while (Files.exists(target) || Files.exists(target.resolveSibling(target.getFileName() + ".gz")));
+        channel.close();
+        try {
+            Files.move(path, target);
+        } finally {
+            channel = open();
+        }
+        size = 0;
+        LocalDate now = LocalDate.now();
+        if (!now.equals(date)) {
+            date = now;
+            index = 1;
+        }
+        Path rolled = target;
+        COMPRESSOR.execute(() -> {
+            compress(rolled);
+            prune();
+        });
+    }
+
+    /**
+     * Compresses the rolled file to a .gz file and deletes the original.
+     *
+     * @param file the rolled file
+     */
+    private static void compress(Path file) {
+        Path gzip = file.resolveSibling(file.getFileName() + ".gz");
+        try (InputStream in = Files.newInputStream(file); OutputStream out = new GZIPOutputStream(Files.newOutputStream(gzip))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
+        }
+        try {
+            Files.delete(file);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Deletes the oldest compressed files beyond
+     * {@link RollingPolicy#getMaxFiles()}. Since files are compressed in the
+     * order they are rolled, the oldest are those modified first.
+     */
+    private void prune() {
+        if (policy.getMaxFiles() <= 0) {
+            return;
+        }
+        List<Path> rolled = Lists.newArrayList();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path.toAbsolutePath().getParent(), name + ".*")) {
+            for (Path file : stream) {
+                if (file.getFileName().toString().endsWith(extension + ".gz")) {
+                    rolled.add(file);
+                }
+            }
+            rolled.sort(Comparator.comparing(file -> file.toFile().lastModified()));
+            for (int i = 0; i < rolled.size() - policy.getMaxFiles(); i++) {
+                Files.deleteIfExists(rolled.get(i));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes any buffered messages to the file, followed by an fsync if
+     * required by the {@link FlushPolicy}.
+     *
+     * @throws IOException if the file could not be flushed
+     */
+    public synchronized void flush() throws IOException {
+        if (buffer.position() > 0) {
+            LogMetrics metrics = this.metrics;
+            long start = metrics != null ? System.nanoTime() : 0;
+            try {
+                write();
+                if (flushPolicy.isSync()) {
+                    channel.force(false);
+                }
+            } catch (IOException e) {
+                if (metrics != null) {
+                    metrics.recordFailure();
+                }
+                throw e;
+            }
+            if (metrics != null) {
+                metrics.recordFlush(System.nanoTime() - start);
+            }
+        }
+        lastFlush = System.currentTimeMillis();
+    }
+
+    /**
+     * Flushes and closes the file.
+     *
+     * @throws IOException if the file could not be closed
+     */
+    public synchronized void close() throws IOException {
+        if (flusher != null) {
+            flusher.cancel(false);
+        }
+        if (channel.isOpen()) {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,140 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import java.util.Arrays;
+
+/**
+ * Renders slf4j style messages, where each {} in the format is replaced by the
+ * next argument, into a buffer reused by the current thread.
+ *
+ * As with slf4j, a placeholder may be escaped as \{} and a trailing
+ * {@link Throwable} argument with no matching placeholder is treated as the
+ * throwable of the message rather than an argument.
+ *
+ * Arguments are passed as two fixed arguments and an optional array so that
+ * calls with one or two arguments do not allocate a varargs array.
+ *
+ * Formatting is reentrant: if an argument logs while being rendered, the
+ * nested message is rendered into a new buffer instead of the reused one.
+ */
+final class LogFormatter {
+
+    private static final int MAX_RETAINED_CAPACITY = 4096;
+    private static final ThreadLocal<LogFormatter> FORMATTER = ThreadLocal.withInitial(LogFormatter::new);
+
+    private StringBuilder builder = new StringBuilder(256);
+    private boolean formatting;
+    private Throwable throwable;
+
+    private LogFormatter() {}
+
+    /**
+     * @return the formatter for the current thread
+     */
+    static LogFormatter get() {
+        return FORMATTER.get();
+    }
+
+    /**
+     * Renders the format with the given arguments. If {@code args} is not
+     * null, it holds every argument and the fixed arguments are ignored.
+     *
+     * @param format the format of the message
+     * @param count the number of arguments
+     * @param first the first argument
+     * @param second the second argument
+     * @param args every argument, or null
+     * @return the rendered message
+     */
+    String format(String format, int count, Object first, Object second, Object[] args) {
+        if (formatting) {
+            return render(new StringBuilder(256), format, count, first, second, args);
+        }
+        formatting = true;
+        try {
+            StringBuilder builder = this.builder;
+            builder.setLength(0);
+            String msg = render(builder, format, count, first, second, args);
+            if (builder.capacity() > MAX_RETAINED_CAPACITY) {
+                this.builder = new StringBuilder(256);
+            }
+            return msg;
+        } finally {
+            formatting = false;
+        }
+    }
+
+    private String render(StringBuilder builder, String format, int count, Object first, Object second, Object[] args) {
+        int used = 0;
+        int start = 0;
+        int length = format != null ? format.length() : 0;
+        while (start < length) {
+            int index = format.indexOf("{}", start);
+            if (index < 0 || used >= count) {
+                break;
+            }
+            if (index > 0 && format.charAt(index - 1) == '\\') {
+                if (index > 1 && format.charAt(index - 2) == '\\') {
+                    builder.append(format, start, index - 1);
+                    append(builder, argument(used++, first, second, args));
+                } else {
+                    builder.append(format, start, index - 1).append("{}");
+                }
+            } else {
+                builder.append(format, start, index);
+                append(builder, argument(used++, first, second, args));
+            }
+            start = index + 2;
+        }
+        if (start < length) {
+            builder.append(format, start, length);
+        }
+        Object last = count > 0 ? argument(count - 1, first, second, args) : null;
+        throwable = used < count && last instanceof Throwable ? (Throwable) last : null;
+        return builder.toString();
+    }
+
+    /**
+     * Returns the trailing throwable of the last formatted message and clears
+     * it, so the formatter does not keep the throwable alive.
+     *
+     * @return the throwable, or null
+     */
+    Throwable takeThrowable() {
+        Throwable throwable = this.throwable;
+        this.throwable = null;
+        return throwable;
+    }
+
+    private static Object argument(int index, Object first, Object second, Object[] args) {
+        return args != null ? args[index] : index == 0 ? first : second;
+    }
+
+    static void append(StringBuilder builder, Object arg) {
+        try {
+            if (arg == null || !arg.getClass().isArray()) {
+                builder.append(arg);
+            } else if (arg instanceof Object[]) {
+                builder.append(Arrays.deepToString((Object[]) arg));
+            } else if (arg instanceof int[]) {
+                builder.append(Arrays.toString((int[]) arg));
+            } else if (arg instanceof long[]) {
+                builder.append(Arrays.toString((long[]) arg));
+            } else if (arg instanceof double[]) {
+                builder.append(Arrays.toString((double[]) arg));
+            } else if (arg instanceof float[]) {
+                builder.append(Arrays.toString((float[]) arg));
+            } else if (arg instanceof boolean[]) {
+                builder.append(Arrays.toString((boolean[]) arg));
+            } else if (arg instanceof byte[]) {
+                builder.append(Arrays.toString((byte[]) arg));
+            } else if (arg instanceof short[]) {
+                builder.append(Arrays.toString((short[]) arg));
+            } else if (arg instanceof char[]) {
+                builder.append(Arrays.toString((char[]) arg));
+            }
+        } catch (RuntimeException e) {
+            builder.append("[FAILED toString()]");
+        }
+    }
+
+}
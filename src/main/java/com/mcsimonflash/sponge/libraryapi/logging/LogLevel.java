@@ -0,0 +1,14 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+/**
+ * The levels a message may be logged at, ordered from least to most severe.
+ */
+public enum LogLevel {
+
+    TRACE,
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR
+
+}
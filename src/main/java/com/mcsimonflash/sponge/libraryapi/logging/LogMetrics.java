@@ -0,0 +1,235 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters for the cost of logging: the number of events per level, the bytes
+ * written, the latency of writes and flushes, the number of IO failures, the
+ * number of messages dropped by an {@link AsyncLogWriter} and the number of
+ * messages waiting to be written.
+ *
+ * Every counter is a {@link LongAdder}, so recording from many threads does
+ * not contend on a single value and the metrics can be left on permanently.
+ * Values are read as a sum of the stripes and are therefore not an atomic
+ * snapshot across counters.
+ *
+ * A single instance may be shared by {@link LoggerService}s, which record
+ * events and drops, and {@link LogFile}s, which record bytes, latencies and
+ * failures. {@link LoggingHub#setMetrics(LogMetrics)} sets an instance on the
+ * shared files of a hub.
+ */
+public class LogMetrics {
+
+    private final LongAdder[] events = new LongAdder[LogLevel.values().length];
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder drops = new LongAdder();
+    private final Histogram writeLatency = new Histogram();
+    private final Histogram flushLatency = new Histogram();
+    private volatile LongSupplier backlog;
+
+    /**
+     * Creates a new instance with every counter at zero.
+     */
+    public LogMetrics() {
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new LongAdder();
+        }
+    }
+
+    void recordEvent(LogLevel level) {
+        events[level.ordinal()].increment();
+    }
+
+    void recordWrite(long bytes, long nanos) {
+        this.bytes.add(bytes);
+        writeLatency.record(nanos);
+    }
+
+    void recordFlush(long nanos) {
+        flushLatency.record(nanos);
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    void recordDrop() {
+        drops.increment();
+    }
+
+    /**
+     * Sets the source of the backlog, such as
+     * {@link AsyncLogWriter#getBacklog()}.
+     *
+     * @param backlog the source of the backlog, or null if writes are not
+     *     buffered
+     */
+    public void setBacklog(LongSupplier backlog) {
+        this.backlog = backlog;
+    }
+
+    /**
+     * @param level the level
+     * @return the number of events logged at the level
+     */
+    public long getEvents(LogLevel level) {
+        return events[level.ordinal()].sum();
+    }
+
+    /**
+     * @return the number of bytes written to log files
+     */
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    /**
+     * @return the number of failed writes and flushes
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * @return the number of messages dropped because the async writer was
+     *     full
+     */
+    public long getDrops() {
+        return drops.sum();
+    }
+
+    /**
+     * @return the latency of writing a message to a log file
+     */
+    public Histogram getWriteLatency() {
+        return writeLatency;
+    }
+
+    /**
+     * @return the latency of flushing a log file
+     */
+    public Histogram getFlushLatency() {
+        return flushLatency;
+    }
+
+    /**
+     * @return the number of messages waiting to be written, or 0 if no
+     *     source is set
+     */
+    public long getBacklog() {
+        LongSupplier backlog = this.backlog;
+        return backlog != null ? backlog.getAsLong() : 0;
+    }
+
+    /**
+     * Creates a human readable report of the current values.
+     *
+     * @return the lines of the report
+     */
+    public List<String> report() {
+        List<String> lines = Lists.newArrayList();
+        StringBuilder builder = new StringBuilder("Events:");
+        for (LogLevel level : LogLevel.values()) {
+            builder.append(' ').append(level).append('=').append(getEvents(level));
+        }
+        lines.add(builder.toString());
+        lines.add("Bytes written: " + getBytes() + ", IO failures: " + getFailures() + ", drops: " + getDrops() + ", backlog: " + getBacklog());
+        lines.add("Write latency: " + writeLatency);
+        lines.add("Flush latency: " + flushLatency);
+        return lines;
+    }
+
+    /**
+     * A histogram of latencies in nanoseconds, bucketed by powers of two.
+     * Bucket {@code i} counts latencies of at least {@code 2^(i-1)} and less
+     * than {@code 2^i} nanoseconds.
+     */
+    public static final class Histogram {
+
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder total = new LongAdder();
+
+        private Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long nanos) {
+            buckets[64 - Long.numberOfLeadingZeros(Math.max(nanos, 0))].increment();
+            total.add(nanos);
+        }
+
+        /**
+         * @return the number of recorded latencies
+         */
+        public long getCount() {
+            long count = 0;
+            for (LongAdder bucket : buckets) {
+                count += bucket.sum();
+            }
+            return count;
+        }
+
+        /**
+         * @return the mean latency in nanoseconds, or 0 if none are recorded
+         */
+        public long getMean() {
+            long count = getCount();
+            return count > 0 ? total.sum() / count : 0;
+        }
+
+        /**
+         * @return the count of every bucket
+         */
+        public long[] getBuckets() {
+            long[] counts = new long[buckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+            }
+            return counts;
+        }
+
+        /**
+         * Returns an upper bound of the given percentile, which is the upper
+         * bound of the bucket holding it.
+         *
+         * @param percentile the percentile, between 0 and 100
+         * @return the upper bound in nanoseconds, or 0 if none are recorded
+         */
+        public long getPercentile(double percentile) {
+            long[] counts = getBuckets();
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+            long target = (long) Math.ceil(count * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (count > 0 && seen >= target) {
+                    return i < 63 ? 1L << i : Long.MAX_VALUE;
+                }
+            }
+            return 0;
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount() + " mean=" + format(getMean()) + " p50<" + format(getPercentile(50))
+                    + " p99<" + format(getPercentile(99)) + " max<" + format(getPercentile(100));
+        }
+
+        private static String format(long nanos) {
+            return nanos >= TimeUnit.MILLISECONDS.toNanos(1) ? nanos / 1000000 + "ms" : nanos >= 1000 ? nanos / 1000 + "us" : nanos + "ns";
+        }
+
+    }
+
+}
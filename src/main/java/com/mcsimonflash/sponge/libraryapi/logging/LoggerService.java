@@ -1,33 +1,55 @@
 package com.mcsimonflash.sponge.libraryapi.logging;
 
 import org.slf4j.Logger;
+import org.slf4j.Marker;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.scheduler.Task;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
 
 /* TODO:
- * Consider a single LoggerService that catches all logged message and outputs
- * them to a unified collection of log files. A useful 'filter' feature might be
- * included to filter out (or in) logs from specific plugins.
- */
-/* TODO:
- * Consider implementing the slf4j Logger instead of wrapping an existing one.
- */
-/* TODO:
- * If this class implements the slf4j Logger, is it possible to overwrite the
- * Guice @Inject Logger registered by Sponge to return this instead?
+ * Is it possible to overwrite the Guice @Inject Logger registered by Sponge to
+ * return this instead?
  */
 /**
- * A logging service that wraps the {@link org.slf4j.Logger}. This logger can
- * save message to an external log file and enable/disable a debug mode.
+ * A logging service that implements the {@link org.slf4j.Logger} by wrapping
+ * an existing one. This logger can save message to an external log file and
+ * enable/disable a debug mode. Trace messages are logged to the debug file and
+ * are also subject to the debug mode.
+ *
+ * Whether each level is enabled for the wrapped logger is read once and kept
+ * as a single mask of levels, so disabled calls only cost a field read. The
+ * mask is replaced as a whole and is volatile, so a refresh on another thread,
+ * such as from a filter change of a {@link LoggingHub}, is seen by every
+ * thread. If the levels of the wrapped logger are changed, call
+ * {@link #refreshLevels()}.
+ *
+ * The log files buffer messages according to their {@link FlushPolicy}, so
+ * the service must be closed when the plugin stops to write the remaining
+ * messages and stop the flush tasks of the files; see
+ * {@link #closeOnShutdown(Object)}.
+ *
+ * To collect the logs of many plugins into shared files, see
+ * {@link LoggingHub}.
  */
-public class LoggerService {
+public class LoggerService implements Logger, Closeable {
 
     private final Logger logger;
     private final LogFile info, warn, error, debug;
-    private boolean debugMode;
+    private final LoggingHub.Registration hub;
+    private volatile boolean debugMode;
+    private volatile int levels;
+    private AsyncLogWriter async;
+    private ThrowableDeduplicator dedup;
+    private BinaryLogWriter binary;
+    private LogMetrics metrics;
+    private volatile boolean closed;
 
     /**
      * Creates a new instance without any log files.
@@ -68,6 +90,27 @@ public class LoggerService {
         this.warn = warn;
         this.error = error;
         this.debug = debug;
+        this.hub = null;
+        refreshLevels();
+    }
+
+    /**
+     * Creates a new instance writing to the shared files of a
+     * {@link LoggingHub} instead of its own files.
+     *
+     * @see LoggingHub#register(org.spongepowered.api.plugin.PluginContainer, Logger)
+     *
+     * @param logger the slf4j logger to wrap
+     * @param hub the registration of the plugin in the hub
+     */
+    LoggerService(Logger logger, LoggingHub.Registration hub) {
+        this.logger = logger;
+        this.info = null;
+        this.warn = null;
+        this.error = null;
+        this.debug = null;
+        this.hub = hub;
+        refreshLevels();
     }
 
     /**
@@ -80,21 +123,227 @@ public class LoggerService {
         debugMode = debug;
     }
 
+    /**
+     * Reads which levels are enabled for the wrapped logger again. This only
+     * needs to be called if the levels of the wrapped logger are changed after
+     * this service is created.
+     */
+    public void refreshLevels() {
+        int levels = 0;
+        levels |= logger.isTraceEnabled() ? mask(LogLevel.TRACE) : 0;
+        levels |= logger.isDebugEnabled() ? mask(LogLevel.DEBUG) : 0;
+        levels |= logger.isInfoEnabled() ? mask(LogLevel.INFO) : 0;
+        levels |= logger.isWarnEnabled() ? mask(LogLevel.WARN) : 0;
+        levels |= logger.isErrorEnabled() ? mask(LogLevel.ERROR) : 0;
+        this.levels = levels;
+    }
+
+    private static int mask(LogLevel level) {
+        return 1 << level.ordinal();
+    }
+
+    @Override
+    public String getName() {
+        return logger.getName();
+    }
+
+    /**
+     * Sets the {@link AsyncLogWriter} used to write messages to the log files.
+     * If null, messages are written on the calling thread.
+     *
+     * @param async the async writer, or null
+     */
+    public void setAsyncWriter(AsyncLogWriter async) {
+        this.async = async;
+        if (metrics != null) {
+            metrics.setBacklog(async != null ? async::getBacklog : null);
+        }
+    }
+
+    /**
+     * Sets the {@link LogMetrics} recording the events logged by this service.
+     * The metrics are also set on the log files of this service, and the
+     * backlog and drops of the {@link AsyncLogWriter} are reported if one is
+     * set. For a service registered with a {@link LoggingHub}, the metrics of
+     * the shared files are set with {@link LoggingHub#setMetrics(LogMetrics)}.
+     *
+     * @param metrics the metrics, or null
+     */
+    public void setMetrics(LogMetrics metrics) {
+        this.metrics = metrics;
+        for (LogFile file : new LogFile[] {info, warn, error, debug}) {
+            if (file != null) {
+                file.setMetrics(metrics);
+            }
+        }
+        if (metrics != null && async != null) {
+            metrics.setBacklog(async::getBacklog);
+        }
+    }
+
+    /**
+     * Submits an async task sending the report of the {@link LogMetrics} to
+     * the wrapped logger at the given interval. The report is not written to
+     * the log files. This requires metrics to be set.
+     *
+     * @see LogMetrics#report()
+     *
+     * @param plugin the plugin owning the task
+     * @param interval the interval between reports
+     * @param unit the unit of the interval
+     * @return the submitted task
+     */
+    public Task startMetricsReport(Object plugin, long interval, TimeUnit unit) {
+        return Task.builder()
+                .async()
+                .interval(interval, unit)
+                .name("LoggerService metrics report task")
+                .execute(() -> {
+                    LogMetrics metrics = this.metrics;
+                    if (metrics != null) {
+                        for (String line : metrics.report()) {
+                            logger.info(line);
+                        }
+                    }
+                })
+                .submit(plugin);
+    }
+
+    /**
+     * Sets the {@link BinaryLogWriter} used to write debug and trace messages.
+     * If set, these messages are written as binary records instead of to the
+     * debug file, and are only formatted if they are also sent to the wrapped
+     * logger. If null, they are written to the debug file as text.
+     *
+     * @param binary the binary writer, or null
+     */
+    public void setBinaryWriter(BinaryLogWriter binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Sets the {@link ThrowableDeduplicator} used to detect repeated
+     * throwables. If set, the first occurrence of a throwable is logged in
+     * full with its id appended to the message, and repeats are logged as a
+     * short reference to that id instead of the stack trace. If null, every
+     * throwable is logged in full.
+     *
+     * @param dedup the deduplicator, or null
+     */
+    public void setThrowableDeduplicator(ThrowableDeduplicator dedup) {
+        this.dedup = dedup;
+    }
+
+    /**
+     * Submits an async task logging a warning for every throwable repeated
+     * since the last summary, at the given interval. This requires a
+     * {@link ThrowableDeduplicator} to be set.
+     *
+     * @see ThrowableDeduplicator#summarize()
+     *
+     * @param plugin the plugin owning the task
+     * @param interval the interval between summaries
+     * @param unit the unit of the interval
+     * @return the submitted task
+     */
+    public Task startThrowableSummary(Object plugin, long interval, TimeUnit unit) {
+        return Task.builder()
+                .async()
+                .interval(interval, unit)
+                .name("LoggerService throwable summary task")
+                .execute(() -> {
+                    ThrowableDeduplicator dedup = this.dedup;
+                    if (dedup != null) {
+                        for (String line : dedup.summarize()) {
+                            warn(line);
+                        }
+                    }
+                })
+                .submit(plugin);
+    }
+
+    /**
+     * Writes any buffered messages to the log files of this service.
+     */
+    public void flush() {
+        for (LogFile file : new LogFile[] {info, warn, error, debug}) {
+            if (file != null) {
+                try {
+                    file.flush();
+                } catch (IOException e) {
+                    logger.error("Unable to flush log file.", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers a listener closing this service when the server is stopping.
+     *
+     * @param plugin the plugin registering the listener
+     */
+    public void closeOnShutdown(Object plugin) {
+        Sponge.getEventManager().registerListener(plugin, GameStoppingServerEvent.class, event -> close());
+    }
+
+    /**
+     * Closes the {@link AsyncLogWriter} if one is set, so its remaining
+     * messages are written, then flushes and closes the log files of this
+     * service. The files of a {@link LoggingHub} are closed by the hub.
+     *
+     * Messages logged afterwards are only sent to the wrapped logger.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        AsyncLogWriter async = this.async;
+        if (async != null) {
+            async.close();
+        }
+        for (LogFile file : new LogFile[] {info, warn, error, debug}) {
+            if (file != null) {
+                try {
+                    file.close();
+                } catch (IOException e) {
+                    logger.error("Unable to close log file.", e);
+                }
+            }
+        }
+    }
+
     /**
      * Attempts to log a message to the provided {@link LogFile}. If the file
      * for this type of log is not set, this call does nothing.
      *
-     * If {@link LogFile#log(String)} throws an {@link IOException}, it will be
-     * resent as an error. If the file is the {@link #error} file, it will call
-     * {@link Logger#error(String, Throwable)}.
+     * If an {@link AsyncLogWriter} is set, the message is published to it and
+     * written on its thread instead. If this service was registered with a
+     * {@link LoggingHub}, the message is passed to the hub instead. Once this
+     * service is closed, messages are no longer written to its files.
+     *
+     * If {@link LogFile#log(String, LogLevel)} throws an {@link IOException},
+     * it will be resent as an error. If the file is the {@link #error} file, it
+     * will call {@link Logger#error(String, Throwable)}.
      *
      * @param file the file to log the message in
+     * @param level the level of the message
      * @param msg the message to be logged
      */
-    private void logMessage(LogFile file, String msg) {
-        if (file != null) {
+    private void logMessage(LogFile file, LogLevel level, String msg) {
+        AsyncLogWriter async = this.async;
+        if (hub != null) {
+            hub.log(level, msg);
+        } else if (closed) {
+            return;
+        } else if (async != null && file != null) {
+            if (!async.publish(file, level, msg)) {
+                LogMetrics metrics = this.metrics;
+                if (metrics != null) {
+                    metrics.recordDrop();
+                }
+            }
+        } else if (file != null) {
             try {
-                file.log(msg);
+                file.log(msg, level);
             } catch (IOException e) {
                 if (file == error) {
                     logger.error("Unable to save log message to file. Message: " + msg, e);
@@ -108,101 +357,543 @@ public class LoggerService {
     /**
      * Attempts to log a {@link Throwable}.
      *
-     * This constructs a call to {@link #logMessage(LogFile, String)} where the
-     * {@param msg} is the stacktrace of the throwable.
+     * This constructs a call to {@link #logMessage(LogFile, LogLevel, String)}
+     * where the {@param msg} is the stacktrace of the throwable.
      *
      * @param log the file to log the throwable in
+     * @param level the level of the message
      * @param t the throwable to be logged
      */
-    private void logThrowable(LogFile log, Throwable t) {
-        if (log != null) {
+    private void logThrowable(LogFile log, LogLevel level, Throwable t) {
+        if (hasSink(log, level)) {
             StringWriter sw = new StringWriter();
             t.printStackTrace(new PrintWriter(sw, true));
-            logMessage(log, sw.getBuffer().toString());
+            logMessage(log, level, sw.getBuffer().toString());
+        }
+    }
+
+    /**
+     * Logs a message and optional throwable if the level has a sink or is
+     * enabled for the wrapped logger.
+     *
+     * If a {@link ThrowableDeduplicator} is set, the id of the throwable is
+     * appended to the message, and a repeated throwable is replaced by a
+     * short reference for both the file and the wrapped logger.
+     *
+     * @param level the level of the message
+     * @param file the file for the level
+     * @param marker the marker of the message, or null
+     * @param msg the message to be logged
+     * @param t the throwable to be logged, or null
+     */
+    private void log(LogLevel level, LogFile file, Marker marker, String msg, Throwable t) {
+        boolean enabled = isEnabled(level);
+        if (!enabled && !hasSink(file, level)) {
+            return;
+        }
+        LogMetrics metrics = this.metrics;
+        if (metrics != null) {
+            metrics.recordEvent(level);
+        }
+        if (writeBinary(level, "{}", t != null ? 2 : 1, msg, t, null)) {
+            if (enabled) {
+                dispatch(level, marker, msg, t);
+            }
+            return;
+        }
+        ThrowableDeduplicator dedup = this.dedup;
+        if (t != null && dedup != null) {
+            ThrowableDeduplicator.Occurrence occurrence = dedup.record(t);
+            if (occurrence != null && occurrence.isFirst()) {
+                msg = msg + " [throwable #" + occurrence.getId() + "]";
+            } else if (occurrence != null) {
+                msg = msg + " " + occurrence.reference(t);
+                t = null;
+            }
+        }
+        if (hasSink(file, level)) {
+            logMessage(file, level, msg);
+            if (t != null) {
+                logThrowable(file, level, t);
+            }
+        }
+        if (enabled) {
+            dispatch(level, marker, msg, t);
+        }
+    }
+
+    /**
+     * Formats and logs a parameterized message if the level has a sink or is
+     * enabled for the wrapped logger. If neither is the case, nothing is
+     * formatted.
+     *
+     * The message is rendered once by {@link LogFormatter} and the same
+     * string is sent to the file and the logger, along with any trailing
+     * {@link Throwable} argument.
+     *
+     * @see LogFormatter#format(String, int, Object, Object, Object[])
+     */
+    private void logFormatted(LogLevel level, LogFile file, Marker marker, String format, int count, Object first, Object second, Object[] args) {
+        boolean enabled = isEnabled(level);
+        if (!enabled && !hasSink(file, level)) {
+            return;
+        }
+        LogFormatter formatter = LogFormatter.get();
+        if (writeBinary(level, format, count, first, second, args)) {
+            LogMetrics metrics = this.metrics;
+            if (metrics != null) {
+                metrics.recordEvent(level);
+            }
+            if (enabled) {
+                String msg = formatter.format(format, count, first, second, args);
+                dispatch(level, marker, msg, formatter.takeThrowable());
+            }
+            return;
+        }
+        String msg = formatter.format(format, count, first, second, args);
+        log(level, file, marker, msg, formatter.takeThrowable());
+    }
+
+    /**
+     * Writes the message to the {@link BinaryLogWriter} if one is set and the
+     * level is below {@link LogLevel#INFO}. If the record could not be
+     * written, it is resent as an error.
+     *
+     * @return whether the message is handled by the binary writer
+     */
+    private boolean writeBinary(LogLevel level, String format, int count, Object first, Object second, Object[] args) {
+        BinaryLogWriter binary = this.binary;
+        if (binary == null || level.compareTo(LogLevel.INFO) >= 0) {
+            return false;
+        }
+        try {
+            binary.write(level, format, count, first, second, args);
+        } catch (IOException e) {
+            error("Unable to save binary log message to file. Format: " + format, e);
+        }
+        return true;
+    }
+
+    /**
+     * Sends the message to the method of the wrapped logger for the level,
+     * passing the marker only if it is not null.
+     */
+    private void dispatch(LogLevel level, Marker marker, String msg, Throwable t) {
+        switch (level) {
+            case TRACE:
+                if (marker != null) {
+                    logger.trace(marker, msg, t);
+                } else {
+                    logger.trace(msg, t);
+                }
+                break;
+            case DEBUG:
+                if (marker != null) {
+                    logger.debug(marker, msg, t);
+                } else {
+                    logger.debug(msg, t);
+                }
+                break;
+            case INFO:
+                if (marker != null) {
+                    logger.info(marker, msg, t);
+                } else {
+                    logger.info(msg, t);
+                }
+                break;
+            case WARN:
+                if (marker != null) {
+                    logger.warn(marker, msg, t);
+                } else {
+                    logger.warn(msg, t);
+                }
+                break;
+            case ERROR:
+                if (marker != null) {
+                    logger.error(marker, msg, t);
+                } else {
+                    logger.error(msg, t);
+                }
+                break;
         }
     }
 
+    /**
+     * Returns whether a message of the given level is written anywhere other
+     * than the wrapped logger, either to the given file, the hub or the binary
+     * writer.
+     *
+     * @param file the file for the level
+     * @param level the level
+     * @return whether the message has a sink
+     */
+    private boolean hasSink(LogFile file, LogLevel level) {
+        if (binary != null && level.compareTo(LogLevel.INFO) < 0) {
+            return true;
+        }
+        return hub != null ? hub.accepts(level) : file != null;
+    }
+
+    /**
+     * Returns whether the wrapped logger is enabled for the given level, as
+     * of the last call to {@link #refreshLevels()}.
+     *
+     * @param level the level
+     * @return whether the level is enabled
+     */
+    private boolean isEnabled(LogLevel level) {
+        return (levels & mask(level)) != 0;
+    }
+
     /*
-     * The following methods are all designed to implement the basic Logger
-     * methods and some of their variants.
+     * The following methods implement the Logger by calling the necessary log
+     * methods above, which call the respective method of the wrapped Logger.
+     * Parameterized messages use slf4j {} placeholders and are only formatted
+     * if they will be logged.
      *
-     * Each method simply calls the necessary log methods above before calling
-     * the respective Logger method.
+     * Markers are passed on to the wrapped Logger, which applies any filtering
+     * by marker itself. Trace and debug methods include a simple check to see
+     * if debug mode is enabled. If it is not, the method does nothing.
      */
 
-    public void info(String msg) {
-        logMessage(info, msg);
-        logger.info(msg);
+    @Override
+    public boolean isTraceEnabled() {
+        return debugMode && (isEnabled(LogLevel.TRACE) || hasSink(debug, LogLevel.TRACE));
     }
 
-    public void info(String msg, Throwable t) {
-        logMessage(info, msg);
-        logThrowable(info, t);
-        logger.info(msg, t);
+    @Override
+    public boolean isTraceEnabled(Marker marker) {
+        return isTraceEnabled();
     }
 
-    public void info(String format, Object... arguments) {
-        logMessage(info, String.format(format, arguments));
-        logger.info(format, arguments);
+    @Override
+    public void trace(String msg) {
+        if (debugMode) {
+            log(LogLevel.TRACE, debug, null, msg, null);
+        }
     }
 
-    public void warn(String msg) {
-        logMessage(warn, msg);
-        logger.warn(msg);
+    @Override
+    public void trace(String msg, Throwable t) {
+        if (debugMode) {
+            log(LogLevel.TRACE, debug, null, msg, t);
+        }
     }
 
-    public void warn(String msg, Throwable t) {
-        logMessage(warn, msg);
-        logThrowable(warn, t);
-        logger.warn(msg, t);
+    @Override
+    public void trace(String format, Object arg) {
+        if (debugMode) {
+            logFormatted(LogLevel.TRACE, debug, null, format, 1, arg, null, null);
+        }
     }
 
-    public void warn(String format, Object... arguments) {
-        logMessage(warn, String.format(format, arguments));
-        logger.warn(format, arguments);
+    @Override
+    public void trace(String format, Object arg1, Object arg2) {
+        if (debugMode) {
+            logFormatted(LogLevel.TRACE, debug, null, format, 2, arg1, arg2, null);
+        }
     }
 
-    public void error(String msg) {
-        logMessage(error, msg);
-        logger.error(msg);
+    @Override
+    public void trace(String format, Object... arguments) {
+        if (debugMode) {
+            logFormatted(LogLevel.TRACE, debug, null, format, arguments.length, null, null, arguments);
+        }
     }
 
-    public void error(String msg, Throwable t) {
-        logMessage(error, msg);
-        logThrowable(error, t);
-        logger.error(msg, t);
+    @Override
+    public void trace(Marker marker, String msg) {
+        if (debugMode) {
+            log(LogLevel.TRACE, debug, marker, msg, null);
+        }
     }
 
-    public void error(String format, Object... arguments) {
-        logMessage(error, String.format(format, arguments));
-        logger.error(format, arguments);
+    @Override
+    public void trace(Marker marker, String msg, Throwable t) {
+        if (debugMode) {
+            log(LogLevel.TRACE, debug, marker, msg, t);
+        }
     }
 
-    /*
-     * These methods include a simple check to see if debug mode is enabled. If
-     * it is not, the method does nothing.
-     */
+    @Override
+    public void trace(Marker marker, String format, Object arg) {
+        if (debugMode) {
+            logFormatted(LogLevel.TRACE, debug, marker, format, 1, arg, null, null);
+        }
+    }
+
+    @Override
+    public void trace(Marker marker, String format, Object arg1, Object arg2) {
+        if (debugMode) {
+            logFormatted(LogLevel.TRACE, debug, marker, format, 2, arg1, arg2, null);
+        }
+    }
 
+    @Override
+    public void trace(Marker marker, String format, Object... arguments) {
+        if (debugMode) {
+            logFormatted(LogLevel.TRACE, debug, marker, format, arguments.length, null, null, arguments);
+        }
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return debugMode && (isEnabled(LogLevel.DEBUG) || hasSink(debug, LogLevel.DEBUG));
+    }
+
+    @Override
+    public boolean isDebugEnabled(Marker marker) {
+        return isDebugEnabled();
+    }
+
+    @Override
     public void debug(String msg) {
         if (debugMode) {
-            logMessage(debug, msg);
-            logger.debug(msg);
+            log(LogLevel.DEBUG, debug, null, msg, null);
         }
     }
 
+    @Override
     public void debug(String msg, Throwable t) {
         if (debugMode) {
-            logMessage(debug, msg);
-            logThrowable(debug, t);
-            logger.debug(msg, t);
+            log(LogLevel.DEBUG, debug, null, msg, t);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object arg) {
+        if (debugMode) {
+            logFormatted(LogLevel.DEBUG, debug, null, format, 1, arg, null, null);
         }
     }
 
+    @Override
+    public void debug(String format, Object arg1, Object arg2) {
+        if (debugMode) {
+            logFormatted(LogLevel.DEBUG, debug, null, format, 2, arg1, arg2, null);
+        }
+    }
+
+    @Override
     public void debug(String format, Object... arguments) {
         if (debugMode) {
-            logMessage(debug, String.format(format, arguments));
-            logger.debug(format, arguments);
+            logFormatted(LogLevel.DEBUG, debug, null, format, arguments.length, null, null, arguments);
+        }
+    }
+
+    @Override
+    public void debug(Marker marker, String msg) {
+        if (debugMode) {
+            log(LogLevel.DEBUG, debug, marker, msg, null);
+        }
+    }
+
+    @Override
+    public void debug(Marker marker, String msg, Throwable t) {
+        if (debugMode) {
+            log(LogLevel.DEBUG, debug, marker, msg, t);
+        }
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object arg) {
+        if (debugMode) {
+            logFormatted(LogLevel.DEBUG, debug, marker, format, 1, arg, null, null);
+        }
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object arg1, Object arg2) {
+        if (debugMode) {
+            logFormatted(LogLevel.DEBUG, debug, marker, format, 2, arg1, arg2, null);
+        }
+    }
+
+    @Override
+    public void debug(Marker marker, String format, Object... arguments) {
+        if (debugMode) {
+            logFormatted(LogLevel.DEBUG, debug, marker, format, arguments.length, null, null, arguments);
         }
     }
 
-}
\ No newline at end of file
+    @Override
+    public boolean isInfoEnabled() {
+        return isEnabled(LogLevel.INFO) || hasSink(info, LogLevel.INFO);
+    }
+
+    @Override
+    public boolean isInfoEnabled(Marker marker) {
+        return isInfoEnabled();
+    }
+
+    @Override
+    public void info(String msg) {
+        log(LogLevel.INFO, info, null, msg, null);
+    }
+
+    @Override
+    public void info(String msg, Throwable t) {
+        log(LogLevel.INFO, info, null, msg, t);
+    }
+
+    @Override
+    public void info(String format, Object arg) {
+        logFormatted(LogLevel.INFO, info, null, format, 1, arg, null, null);
+    }
+
+    @Override
+    public void info(String format, Object arg1, Object arg2) {
+        logFormatted(LogLevel.INFO, info, null, format, 2, arg1, arg2, null);
+    }
+
+    @Override
+    public void info(String format, Object... arguments) {
+        logFormatted(LogLevel.INFO, info, null, format, arguments.length, null, null, arguments);
+    }
+
+    @Override
+    public void info(Marker marker, String msg) {
+        log(LogLevel.INFO, info, marker, msg, null);
+    }
+
+    @Override
+    public void info(Marker marker, String msg, Throwable t) {
+        log(LogLevel.INFO, info, marker, msg, t);
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object arg) {
+        logFormatted(LogLevel.INFO, info, marker, format, 1, arg, null, null);
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object arg1, Object arg2) {
+        logFormatted(LogLevel.INFO, info, marker, format, 2, arg1, arg2, null);
+    }
+
+    @Override
+    public void info(Marker marker, String format, Object... arguments) {
+        logFormatted(LogLevel.INFO, info, marker, format, arguments.length, null, null, arguments);
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return isEnabled(LogLevel.WARN) || hasSink(warn, LogLevel.WARN);
+    }
+
+    @Override
+    public boolean isWarnEnabled(Marker marker) {
+        return isWarnEnabled();
+    }
+
+    @Override
+    public void warn(String msg) {
+        log(LogLevel.WARN, warn, null, msg, null);
+    }
+
+    @Override
+    public void warn(String msg, Throwable t) {
+        log(LogLevel.WARN, warn, null, msg, t);
+    }
+
+    @Override
+    public void warn(String format, Object arg) {
+        logFormatted(LogLevel.WARN, warn, null, format, 1, arg, null, null);
+    }
+
+    @Override
+    public void warn(String format, Object arg1, Object arg2) {
+        logFormatted(LogLevel.WARN, warn, null, format, 2, arg1, arg2, null);
+    }
+
+    @Override
+    public void warn(String format, Object... arguments) {
+        logFormatted(LogLevel.WARN, warn, null, format, arguments.length, null, null, arguments);
+    }
+
+    @Override
+    public void warn(Marker marker, String msg) {
+        log(LogLevel.WARN, warn, marker, msg, null);
+    }
+
+    @Override
+    public void warn(Marker marker, String msg, Throwable t) {
+        log(LogLevel.WARN, warn, marker, msg, t);
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object arg) {
+        logFormatted(LogLevel.WARN, warn, marker, format, 1, arg, null, null);
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object arg1, Object arg2) {
+        logFormatted(LogLevel.WARN, warn, marker, format, 2, arg1, arg2, null);
+    }
+
+    @Override
+    public void warn(Marker marker, String format, Object... arguments) {
+        logFormatted(LogLevel.WARN, warn, marker, format, arguments.length, null, null, arguments);
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return isEnabled(LogLevel.ERROR) || hasSink(error, LogLevel.ERROR);
+    }
+
+    @Override
+    public boolean isErrorEnabled(Marker marker) {
+        return isErrorEnabled();
+    }
+
+    @Override
+    public void error(String msg) {
+        log(LogLevel.ERROR, error, null, msg, null);
+    }
+
+    @Override
+    public void error(String msg, Throwable t) {
+        log(LogLevel.ERROR, error, null, msg, t);
+    }
+
+    @Override
+    public void error(String format, Object arg) {
+        logFormatted(LogLevel.ERROR, error, null, format, 1, arg, null, null);
+    }
+
+    @Override
+    public void error(String format, Object arg1, Object arg2) {
+        logFormatted(LogLevel.ERROR, error, null, format, 2, arg1, arg2, null);
+    }
+
+    @Override
+    public void error(String format, Object... arguments) {
+        logFormatted(LogLevel.ERROR, error, null, format, arguments.length, null, null, arguments);
+    }
+
+    @Override
+    public void error(Marker marker, String msg) {
+        log(LogLevel.ERROR, error, marker, msg, null);
+    }
+
+    @Override
+    public void error(Marker marker, String msg, Throwable t) {
+        log(LogLevel.ERROR, error, marker, msg, t);
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object arg) {
+        logFormatted(LogLevel.ERROR, error, marker, format, 1, arg, null, null);
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object arg1, Object arg2) {
+        logFormatted(LogLevel.ERROR, error, marker, format, 2, arg1, arg2, null);
+    }
+
+    @Override
+    public void error(Marker marker, String format, Object... arguments) {
+        logFormatted(LogLevel.ERROR, error, marker, format, arguments.length, null, null, arguments);
+    }
+
+}
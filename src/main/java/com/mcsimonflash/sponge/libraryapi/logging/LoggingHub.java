@@ -0,0 +1,306 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.scheduler.Task;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the logs of many plugins into a single set of shared log files,
+ * instead of each plugin opening its own files.
+ *
+ * Plugins register through {@link #register(PluginContainer, Logger)}, which
+ * returns a {@link LoggerService} writing to this hub. Each message is written
+ * to the file for its level prefixed by the id of the plugin that logged it.
+ *
+ * Which levels of a plugin are written is decided by filters set through
+ * {@link #include(String, LogLevel...)} and
+ * {@link #exclude(String, LogLevel...)}. Filters are compiled into a bitmask
+ * of levels for every registered plugin, so checking a message is a single
+ * bitwise and.
+ *
+ * Messages are handed to an {@link AsyncLogWriter} shared by every plugin,
+ * which writes them to the shared {@link LogFile}s on its own thread. Plugins
+ * therefore never wait on the lock of a file, which is held through encoding,
+ * flushing, syncing and rolling; publishing only claims a slot in the ring of
+ * the writer. Lines from different plugins are written in the order they were
+ * published and are flushed as decided by the {@link FlushPolicy} of each
+ * file.
+ */
+public class LoggingHub implements Closeable {
+
+    private static final int ALL_LEVELS = (1 << LogLevel.values().length) - 1;
+
+    private final LogFile[] files = new LogFile[LogLevel.values().length];
+    private final AsyncLogWriter writer;
+    private final Map<String, Integer> filters = Maps.newConcurrentMap();
+    private final Map<String, Registration> registrations = Maps.newConcurrentMap();
+    private volatile int defaultMask = ALL_LEVELS;
+    private volatile LogMetrics metrics;
+
+    /**
+     * Creates a new instance where the shared {@link LogFile}s are stored in
+     * the directory of the given path.
+     *
+     * @param path the path to the directory holding logs
+     * @throws IOException if a LogFile could not be initialized
+     */
+    public LoggingHub(Path path) throws IOException {
+        this(new LogFile(path.resolve("info.log")), new LogFile(path.resolve("warn.log")), new LogFile(path.resolve("error.log")), new LogFile(path.resolve("debug.log")));
+    }
+
+    /**
+     * Creates a new instance with the given shared {@link LogFile}s, written
+     * by an {@link AsyncLogWriter} of 8192 slots which blocks when full.
+     *
+     * @see #LoggingHub(AsyncLogWriter, LogFile, LogFile, LogFile, LogFile)
+     *
+     * @param info the file to log info messages to
+     * @param warn the file to log warn messages to
+     * @param error the file to log error messages to
+     * @param debug the file to log debug messages to
+     */
+    public LoggingHub(LogFile info, LogFile warn, LogFile error, LogFile debug) {
+        this(new AsyncLogWriter(LoggerFactory.getLogger(LoggingHub.class), 8192, AsyncLogWriter.OverflowPolicy.BLOCK), info, warn, error, debug);
+    }
+
+    /**
+     * Creates a new instance with the given shared {@link LogFile}s, written
+     * by the given {@link AsyncLogWriter}. A file may be null to not log that
+     * level, or used for several levels. Trace messages share the debug file.
+     * The writer is closed with this hub.
+     *
+     * @param writer the writer of the shared files
+     * @param info the file to log info messages to
+     * @param warn the file to log warn messages to
+     * @param error the file to log error messages to
+     * @param debug the file to log debug messages to
+     */
+    public LoggingHub(AsyncLogWriter writer, LogFile info, LogFile warn, LogFile error, LogFile debug) {
+        this.writer = writer;
+        files[LogLevel.INFO.ordinal()] = info;
+        files[LogLevel.WARN.ordinal()] = warn;
+        files[LogLevel.ERROR.ordinal()] = error;
+        files[LogLevel.DEBUG.ordinal()] = debug;
+        files[LogLevel.TRACE.ordinal()] = debug;
+    }
+
+    /**
+     * Registers the plugin with this hub, returning a {@link LoggerService}
+     * wrapping the given logger which writes to the shared files. Registering
+     * a plugin again returns a service sharing the same registration.
+     *
+     * Registering and changing filters are synchronized, so a plugin
+     * registering while a filter changes always sees the new filter.
+     *
+     * @param plugin the plugin
+     * @param logger the slf4j logger of the plugin
+     * @return the logger service for the plugin
+     */
+    public synchronized LoggerService register(PluginContainer plugin, Logger logger) {
+        Registration registration = registrations.computeIfAbsent(plugin.getId(), Registration::new);
+        LoggerService service = new LoggerService(logger, registration);
+        if (metrics != null) {
+            service.setMetrics(metrics);
+        }
+        return service;
+    }
+
+    /**
+     * Sets the {@link LogMetrics} recording the bytes, latencies and failures
+     * of the shared files and the backlog and drops of the writer. Services
+     * registered afterwards also record their events in the metrics.
+     *
+     * @param metrics the metrics, or null
+     */
+    public synchronized void setMetrics(LogMetrics metrics) {
+        this.metrics = metrics;
+        if (metrics != null) {
+            metrics.setBacklog(writer::getBacklog);
+        }
+        for (int i = 0; i < files.length; i++) {
+            if (files[i] != null && !isAlias(i)) {
+                files[i].setMetrics(metrics);
+            }
+        }
+    }
+
+    /**
+     * Sets the levels written by default for plugins without a filter.
+     *
+     * @param levels the levels to write
+     */
+    public synchronized void setDefaultLevels(LogLevel... levels) {
+        defaultMask = mask(levels);
+        compile();
+    }
+
+    /**
+     * Adds the given levels to those written for the plugin. If no levels are
+     * given, every level is included.
+     *
+     * @param pluginId the id of the plugin
+     * @param levels the levels to include
+     */
+    public synchronized void include(String pluginId, LogLevel... levels) {
+        int mask = levels.length > 0 ? mask(levels) : ALL_LEVELS;
+        filters.compute(pluginId, (id, current) -> (current != null ? current : defaultMask) | mask);
+        compile();
+    }
+
+    /**
+     * Removes the given levels from those written for the plugin. If no
+     * levels are given, every level is excluded.
+     *
+     * @param pluginId the id of the plugin
+     * @param levels the levels to exclude
+     */
+    public synchronized void exclude(String pluginId, LogLevel... levels) {
+        int mask = levels.length > 0 ? mask(levels) : ALL_LEVELS;
+        filters.compute(pluginId, (id, current) -> (current != null ? current : defaultMask) & ~mask);
+        compile();
+    }
+
+    /**
+     * Recompiles the mask of every registered plugin from the filters. Must
+     * be called while synchronized on this hub.
+     */
+    private void compile() {
+        for (Registration registration : registrations.values()) {
+            registration.compile();
+        }
+    }
+
+    private static int mask(LogLevel... levels) {
+        int mask = 0;
+        for (LogLevel level : levels) {
+            mask |= 1 << level.ordinal();
+        }
+        return mask;
+    }
+
+    /**
+     * Flushes the shared files. Messages still waiting in the writer are not
+     * flushed.
+     */
+    public void flush() {
+        for (int i = 0; i < files.length; i++) {
+            if (files[i] != null && !isAlias(i)) {
+                try {
+                    files[i].flush();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns whether the file of the level at the given index is also the
+     * file of an earlier level, so shared files are only flushed and closed
+     * once.
+     */
+    private boolean isAlias(int index) {
+        for (int i = 0; i < index; i++) {
+            if (files[i] == files[index]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Submits an async task flushing this hub at the given interval and
+     * registers a listener closing it when the server is stopping.
+     *
+     * @param plugin the plugin owning the task
+     * @param interval the interval between flushes
+     * @param unit the unit of the interval
+     * @return the submitted task
+     */
+    public Task start(Object plugin, long interval, TimeUnit unit) {
+        Sponge.getEventManager().registerListener(plugin, GameStoppingServerEvent.class, event -> close());
+        return Task.builder()
+                .async()
+                .interval(interval, unit)
+                .name("LoggingHub flush task")
+                .execute(this::flush)
+                .submit(plugin);
+    }
+
+    /**
+     * Writes the messages waiting in the writer, then flushes and closes the
+     * shared files.
+     */
+    @Override
+    public void close() {
+        writer.close();
+        for (int i = 0; i < files.length; i++) {
+            if (files[i] != null && !isAlias(i)) {
+                try {
+                    files[i].close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * The registration of a plugin, holding its compiled filter.
+     */
+    final class Registration {
+
+        private final String prefix;
+        private final String pluginId;
+        private volatile int mask;
+
+        private Registration(String pluginId) {
+            this.pluginId = pluginId;
+            this.prefix = "[" + pluginId + "] ";
+            compile();
+        }
+
+        private void compile() {
+            mask = filters.getOrDefault(pluginId, defaultMask);
+        }
+
+        /**
+         * Returns whether messages of the given level are written for this
+         * plugin.
+         *
+         * @param level the level
+         * @return whether the level is accepted
+         */
+        boolean accepts(LogLevel level) {
+            return (mask & 1 << level.ordinal()) != 0 && files[level.ordinal()] != null;
+        }
+
+        /**
+         * Publishes the message to the writer of the shared file of the given
+         * level, if the level is accepted.
+         *
+         * @param level the level of the message
+         * @param msg the message
+         */
+        void log(LogLevel level, String msg) {
+            if (accepts(level) && !writer.publish(files[level.ordinal()], level, prefix + msg)) {
+                LogMetrics metrics = LoggingHub.this.metrics;
+                if (metrics != null) {
+                    metrics.recordDrop();
+                }
+            }
+        }
+
+    }
+
+}
\ No newline at end of file
@@ -0,0 +1,81 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Decides when a {@link LogFile} is rolled over to a new file and how many
+ * rolled files are kept.
+ *
+ * A file may be rolled when it exceeds a size, when the date changes, or
+ * both. Rolled files are compressed and the oldest are deleted once more
+ * than the maximum number of files are kept.
+ */
+public class RollingPolicy {
+
+    private static final RollingPolicy NONE = new RollingPolicy(0, false, 0);
+
+    private final long maxSize;
+    private final boolean daily;
+    private final int maxFiles;
+
+    /**
+     * Creates a new instance with the given limits.
+     *
+     * @param maxSize the size in bytes at which to roll, or 0 for no limit
+     * @param daily whether to roll when the date changes
+     * @param maxFiles the number of rolled files to keep, or 0 for no limit
+     */
+    public RollingPolicy(long maxSize, boolean daily, int maxFiles) {
+        Preconditions.checkArgument(maxSize >= 0, "maxSize must not be negative");
+        Preconditions.checkArgument(maxFiles >= 0, "maxFiles must not be negative");
+        this.maxSize = maxSize;
+        this.daily = daily;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * @return a policy which never rolls the file
+     */
+    public static RollingPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * @param maxSize the size in bytes at which to roll
+     * @param maxFiles the number of rolled files to keep, or 0 for no limit
+     * @return a policy rolling the file once it exceeds the given size
+     */
+    public static RollingPolicy size(long maxSize, int maxFiles) {
+        return new RollingPolicy(maxSize, false, maxFiles);
+    }
+
+    /**
+     * @param maxFiles the number of rolled files to keep, or 0 for no limit
+     * @return a policy rolling the file when the date changes
+     */
+    public static RollingPolicy daily(int maxFiles) {
+        return new RollingPolicy(0, true, maxFiles);
+    }
+
+    /**
+     * @return the size in bytes at which to roll, or 0 for no limit
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return whether to roll when the date changes
+     */
+    public boolean isDaily() {
+        return daily;
+    }
+
+    /**
+     * @return the number of rolled files to keep, or 0 for no limit
+     */
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+}
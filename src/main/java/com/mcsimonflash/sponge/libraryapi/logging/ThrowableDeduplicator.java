@@ -0,0 +1,187 @@
+package com.mcsimonflash.sponge.libraryapi.logging;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tracks logged {@link Throwable}s so that repeats of the same failure are not
+ * written in full every time.
+ *
+ * Each throwable is fingerprinted by its type, the frames of its stack trace
+ * and the same for every throwable in its cause chain. The message is not part
+ * of the fingerprint, as it often contains values that change between
+ * repeats. Fingerprinting only reads the stack trace and never renders it.
+ *
+ * The first occurrence of a fingerprint is given an id and should be written
+ * in full; later occurrences should be written as a short reference to that
+ * id. The number of repeats since the last summary can be retrieved with
+ * {@link #summarize()}.
+ *
+ * @see LoggerService#setThrowableDeduplicator(ThrowableDeduplicator)
+ */
+public class ThrowableDeduplicator {
+
+    private static final int MAX_CAUSES = 32;
+
+    private final Map<Long, Entry> entries = Maps.newConcurrentMap();
+    private final int maxTracked;
+
+    /**
+     * Creates a new instance tracking at most the given number of distinct
+     * throwables. Throwables seen once the limit is reached are not tracked
+     * and are always written in full.
+     *
+     * @param maxTracked the maximum number of distinct throwables to track
+     */
+    public ThrowableDeduplicator(int maxTracked) {
+        Preconditions.checkArgument(maxTracked > 0, "maxTracked must be positive");
+        this.maxTracked = maxTracked;
+    }
+
+    /**
+     * Records an occurrence of the throwable.
+     *
+     * @param t the throwable
+     * @return the occurrence, or null if the throwable is not tracked
+     */
+    public Occurrence record(Throwable t) {
+        long fingerprint = fingerprint(t);
+        Entry entry = entries.get(fingerprint);
+        if (entry == null) {
+            if (entries.size() >= maxTracked) {
+                return null;
+            }
+            entry = entries.computeIfAbsent(fingerprint, f -> new Entry(Long.toHexString(f), t.getClass().getName()));
+        }
+        return new Occurrence(entry.id, entry.count.incrementAndGet());
+    }
+
+    /**
+     * Returns a line for every throwable repeated since the last call to this
+     * method, containing the number of repeats since then and in total.
+     *
+     * @return the summary lines, empty if nothing was repeated
+     */
+    public synchronized List<String> summarize() {
+        List<String> lines = Lists.newArrayList();
+        for (Entry entry : entries.values()) {
+            long count = entry.count.get();
+            long repeats = count - Math.max(entry.reported, 1);
+            if (repeats > 0) {
+                lines.add("Throwable #" + entry.id + " (" + entry.type + ") was repeated " + repeats + " times since the last summary, " + count + " times in total.");
+            }
+            entry.reported = count;
+        }
+        return lines;
+    }
+
+    /**
+     * Forgets every tracked throwable, so the next occurrence of each is
+     * written in full again.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of distinct throwables tracked
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Computes the fingerprint of the throwable from the type and frames of
+     * every throwable in its cause chain. Cyclic cause chains are cut at the
+     * first repeated throwable.
+     *
+     * @param t the throwable
+     * @return the fingerprint
+     */
+    static long fingerprint(Throwable t) {
+        long hash = 0xCBF29CE484222325L;
+        Set<Throwable> seen = Sets.newIdentityHashSet();
+        for (int depth = 0; t != null && depth < MAX_CAUSES && seen.add(t); depth++) {
+            hash = mix(hash, t.getClass().getName().hashCode());
+            for (StackTraceElement frame : t.getStackTrace()) {
+                hash = mix(hash, frame.getClassName().hashCode());
+                hash = mix(hash, frame.getMethodName().hashCode());
+                hash = mix(hash, frame.getLineNumber());
+            }
+            t = t.getCause();
+        }
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001B3L;
+    }
+
+    /**
+     * A single occurrence of a tracked throwable.
+     */
+    public static final class Occurrence {
+
+        private final String id;
+        private final long count;
+
+        private Occurrence(String id, long count) {
+            this.id = id;
+            this.count = count;
+        }
+
+        /**
+         * @return the id of the fingerprint of the throwable
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return the number of occurrences including this one
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * @return whether this is the first occurrence of the throwable
+         */
+        public boolean isFirst() {
+            return count == 1;
+        }
+
+        /**
+         * Creates the short reference written in place of a repeated
+         * throwable, containing its id, count and current message.
+         *
+         * @param t the throwable
+         * @return the reference
+         */
+        public String reference(Throwable t) {
+            return "[repeated throwable #" + id + " x" + count + ": " + t + "]";
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final String id, type;
+        private final AtomicLong count = new AtomicLong();
+        private long reported;
+
+        private Entry(String id, String type) {
+            this.id = id;
+            this.type = type;
+        }
+
+    }
+
+}
@@ -0,0 +1,182 @@
+package com.mcsimonflash.sponge.libraryapi.message;
+
+import com.google.common.collect.Maps;
+import org.spongepowered.api.text.Text;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Interns {@link Locale}s to small ints so translations can be stored in dense
+ * arrays indexed by locale, and precomputes the fallback chain of each locale.
+ *
+ * The chain of a locale starts with the locale itself and continues with each
+ * less specific locale, such that {@code en_GB} falls back to {@code en}. The
+ * default locale of a {@link MessageService} is not part of the chain, as it
+ * differs between services.
+ *
+ * Ids are global and never reused, so a locale has the same id for every
+ * message.
+ *
+ * Only locales which may have translations are interned, which are those of
+ * {@link TranslatableMessage}s, of bundle files and the default locales of
+ * {@link MessageService}s; see {@link #register(Locale)}. Any other locale,
+ * such as one sent by a client, is looked up as the nearest registered locale
+ * in its chain, so the table only grows with the translations and not with
+ * the locales of players. A locale with no registered locale in its chain has
+ * the id {@value #UNREGISTERED}, which has an empty chain.
+ */
+public final class LocaleRegistry {
+
+    /**
+     * The id of locales which have no registered locale in their chain.
+     */
+    public static final int UNREGISTERED = 0;
+
+    private static final Map<Locale, Integer> IDS = Maps.newConcurrentMap();
+    private static volatile Locale[] locales = new Locale[16];
+    private static volatile int[][] chains = new int[16][];
+    private static volatile Text[] missing = new Text[16];
+    private static int next = 1;
+
+    static {
+        chains[UNREGISTERED] = new int[0];
+    }
+
+    private LocaleRegistry() {}
+
+    /**
+     * Registers the locale as one which may have translations, interning it
+     * and its fallbacks if it has not been registered before.
+     *
+     * @param locale the locale
+     * @return the id of the locale
+     */
+    public static int register(Locale locale) {
+        Integer id = IDS.get(locale);
+        return id != null ? id : intern(locale);
+    }
+
+    /**
+     * Returns the id of the locale if it is registered, or else that of the
+     * nearest registered locale in its chain. The locale is never interned.
+     *
+     * @param locale the locale
+     * @return the id of the locale or its nearest registered fallback, or
+     *     {@link #UNREGISTERED}
+     */
+    public static int id(Locale locale) {
+        for (Locale candidate = locale; candidate != null; candidate = parent(candidate)) {
+            Integer id = IDS.get(candidate);
+            if (id != null) {
+                return id;
+            }
+        }
+        return UNREGISTERED;
+    }
+
+    /**
+     * Returns the id of the locale if it is registered.
+     *
+     * @param locale the locale
+     * @return the id of the locale, or -1 if it is not registered
+     */
+    public static int registeredId(Locale locale) {
+        Integer id = IDS.get(locale);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the fallback chain of the locale, starting with the locale
+     * itself if it is registered, or else with its nearest registered
+     * fallback. The returned array must not be modified.
+     *
+     * @param locale the locale
+     * @return the ids of the chain
+     */
+    public static int[] chain(Locale locale) {
+        return chains[id(locale)];
+    }
+
+    /**
+     * @param id the id of an interned locale
+     * @return the locale with the id, or null for {@link #UNREGISTERED}
+     */
+    public static Locale locale(int id) {
+        return locales[id];
+    }
+
+    /**
+     * Returns the placeholder shown when a message has no translation for the
+     * locale. The placeholder is created once per registered locale, and on
+     * every call for other locales.
+     *
+     * @param locale the locale
+     * @return the placeholder
+     */
+    public static Text missing(Locale locale) {
+        int id = registeredId(locale);
+        if (id < 0) {
+            return Text.of("No translation for locale " + locale + ".");
+        }
+        Text text = missing[id];
+        if (text == null) {
+            text = Text.of("No translation for locale " + locale + ".");
+            synchronized (LocaleRegistry.class) {
+                missing[id] = text;
+            }
+        }
+        return text;
+    }
+
+    /**
+     * @return the number of registered locales
+     */
+    public static int size() {
+        return IDS.size();
+    }
+
+    /**
+     * Interns the locale after its parent, so the chain of the parent is
+     * available. The id is published last, after the locale and its chain.
+     */
+    private static synchronized int intern(Locale locale) {
+        Integer existing = IDS.get(locale);
+        if (existing != null) {
+            return existing;
+        }
+        Locale parent = parent(locale);
+        int[] parentChain = parent != null ? chains[register(parent)] : new int[0];
+        int id = next++;
+        if (id == locales.length) {
+            locales = Arrays.copyOf(locales, id * 2);
+            chains = Arrays.copyOf(chains, id * 2);
+            missing = Arrays.copyOf(missing, id * 2);
+        }
+        int[] chain = new int[parentChain.length + 1];
+        chain[0] = id;
+        System.arraycopy(parentChain, 0, chain, 1, parentChain.length);
+        locales[id] = locale;
+        chains[id] = chain;
+        IDS.put(locale, id);
+        return id;
+    }
+
+    /**
+     * Returns the next less specific locale by dropping the variant, then
+     * the country. Script and extensions are dropped with the variant.
+     *
+     * @param locale the locale
+     * @return the parent locale, or null if the locale only has a language
+     */
+    private static Locale parent(Locale locale) {
+        if (!locale.getVariant().isEmpty() || !locale.getScript().isEmpty() || locale.hasExtensions()) {
+            return new Locale(locale.getLanguage(), locale.getCountry());
+        } else if (!locale.getCountry().isEmpty()) {
+            return new Locale(locale.getLanguage());
+        }
+        return null;
+    }
+
+}
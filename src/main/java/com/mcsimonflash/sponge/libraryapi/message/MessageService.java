@@ -1,9 +1,12 @@
 package com.mcsimonflash.sponge.libraryapi.message;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Maps;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.translation.locale.Locales;
 
+import java.util.Arrays;
 import java.util.Locale;
 import java.util.Map;
 
@@ -21,18 +24,43 @@ import java.util.Map;
  * This class is intended to be used such as
  *
  * {@code messageService.getMessage("message.key", player.getLocale());}
+ *
+ * Messages may be read from any thread. Lookups read an immutable snapshot of
+ * the messages without locking; changes copy the snapshot and publish the
+ * copy, so they are best made in bulk when loading.
+ *
+ * Messages with arguments are rendered through
+ * {@link #getMessage(String, Locale, Object...)}. Rendered messages are kept
+ * in a bounded cache keyed by the message, locale and arguments, so the same
+ * message sent to many players is only rendered once. Arguments should
+ * therefore be immutable values such as strings, numbers and texts.
  */
 public class MessageService {
 
     private final Locale defaultLocale;
-    private final Map<String, TranslatableMessage> messages = Maps.newHashMap();
+    private final Cache<RenderKey, Text> rendered;
+    private volatile Map<String, TranslatableMessage> messages = Maps.newHashMap();
+    private volatile TranslationBundles bundles;
 
     public MessageService() {
         this(Locales.DEFAULT);
     }
 
     public MessageService(Locale defaultLocale) {
+        this(defaultLocale, 1024);
+    }
+
+    /**
+     * Creates a new instance keeping at most the given number of rendered
+     * messages.
+     *
+     * @param defaultLocale the locale used if a message has no translation
+     * @param renderCacheSize the maximum number of rendered messages to keep
+     */
+    public MessageService(Locale defaultLocale, long renderCacheSize) {
         this.defaultLocale = defaultLocale;
+        LocaleRegistry.register(defaultLocale);
+        this.rendered = CacheBuilder.newBuilder().maximumSize(renderCacheSize).build();
     }
 
     /**
@@ -41,8 +69,10 @@ public class MessageService {
      * @param key the key for the message
      * @param message the message (with any translations)
      */
-    public void addMessage(String key, TranslatableMessage message) {
-        messages.put(key, message);
+    public synchronized void addMessage(String key, TranslatableMessage message) {
+        Map<String, TranslatableMessage> copy = Maps.newHashMap(messages);
+        copy.put(key, message);
+        messages = copy;
     }
 
     /**
@@ -50,8 +80,30 @@ public class MessageService {
      *
      * @param key the key for the message to be removed
      */
-    public void removeMessage(String key) {
-        messages.remove(key);
+    public synchronized void removeMessage(String key) {
+        if (messages.containsKey(key)) {
+            Map<String, TranslatableMessage> copy = Maps.newHashMap(messages);
+            copy.remove(key);
+            messages = copy;
+        }
+    }
+
+    /**
+     * Sets the {@link TranslationBundles} used for keys without an added
+     * {@link TranslatableMessage}. Added messages always take precedence.
+     *
+     * @param bundles the bundles, or null
+     */
+    public void setBundles(TranslationBundles bundles) {
+        this.bundles = bundles;
+    }
+
+    /**
+     * Clears the cache of rendered messages. Changed translations are never
+     * read from the cache, so this only frees memory.
+     */
+    public void clearRenderCache() {
+        rendered.invalidateAll();
     }
 
     /**
@@ -69,6 +121,9 @@ public class MessageService {
      *
      * If the {@link TranslatableMessage} does not contain the provided locale,
      * it will attempt to retrieve the message for the {@link #defaultLocale}.
+     * If no message was added for the key, the message is looked up in the
+     * {@link TranslationBundles} if set, loading bundles as needed, with the
+     * bundle of {@link Locale#ROOT} tried last.
      *
      * @param key the key for the message
      * @param locale the locale for the translation
@@ -79,6 +134,114 @@ public class MessageService {
         if (message != null) {
             return message.getTranslation(locale, defaultLocale);
         }
+        MessageTemplate template = getBundled(key, locale);
+        if (template != null) {
+            return template.getText();
+        }
         return Text.of("No message for key " + key);
     }
+
+    /**
+     * Gets the message for the given key in the given locale, rendered with
+     * the given arguments. The translation is found the same way as in
+     * {@link #getMessage(String, Locale)}.
+     *
+     * The result is cached for the current version of the message, so later
+     * calls with equal arguments return the same Text.
+     *
+     * @see MessageTemplate#render(Object...)
+     *
+     * @param key the key for the message
+     * @param locale the locale for the translation
+     * @param args the arguments of the message
+     * @return the rendered Text message or error message
+     */
+    public Text getMessage(String key, Locale locale, Object... args) {
+        TranslatableMessage message = messages.get(key);
+        Object version;
+        MessageTemplate template;
+        if (message != null) {
+            MessageTemplate[] snapshot = message.snapshot();
+            version = snapshot;
+            template = TranslatableMessage.getTemplate(snapshot, locale, defaultLocale);
+            if (template == null) {
+                return message.getTranslation(locale, defaultLocale);
+            }
+        } else {
+            template = getBundled(key, locale);
+            version = template;
+            if (template == null) {
+                return Text.of("No message for key " + key);
+            }
+        }
+        if (template.getArgumentCount() == 0) {
+            return template.getText();
+        }
+        RenderKey renderKey = new RenderKey(version, LocaleRegistry.id(locale), args);
+        Text text = rendered.getIfPresent(renderKey);
+        if (text == null) {
+            text = template.render(args);
+            rendered.put(new RenderKey(version, renderKey.locale, args.clone()), text);
+        }
+        return text;
+    }
+
+    /**
+     * Finds the template for the key in the bundles, trying the fallback
+     * chain of the locale, then that of the {@link #defaultLocale} and last
+     * the bundle of {@link Locale#ROOT}.
+     *
+     * @return the template, or null if no bundles are set or none has the key
+     */
+    private MessageTemplate getBundled(String key, Locale locale) {
+        TranslationBundles bundles = this.bundles;
+        if (bundles == null) {
+            return null;
+        }
+        for (Locale candidate : new Locale[] {locale, defaultLocale}) {
+            for (int id : LocaleRegistry.chain(candidate)) {
+                MessageTemplate template = bundles.getTemplate(LocaleRegistry.locale(id), key);
+                if (template != null) {
+                    return template;
+                }
+            }
+        }
+        return bundles.getTemplate(Locale.ROOT, key);
+    }
+
+    /**
+     * The key of a rendered message. The version, which is the snapshot of the
+     * translations or the bundled template, is compared by identity, so a
+     * changed message never matches the renders of its previous version.
+     */
+    private static final class RenderKey {
+
+        private final Object version;
+        private final int locale;
+        private final Object[] args;
+        private final int hash;
+
+        private RenderKey(Object version, int locale, Object[] args) {
+            this.version = version;
+            this.locale = locale;
+            this.args = args;
+            this.hash = (System.identityHashCode(version) * 31 + locale) * 31 + Arrays.hashCode(args);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof RenderKey)) {
+                return false;
+            }
+            RenderKey other = (RenderKey) obj;
+            return version == other.version && locale == other.locale && Arrays.equals(args, other.args);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
 }
@@ -0,0 +1,180 @@
+package com.mcsimonflash.sponge.libraryapi.message;
+
+import com.google.common.collect.Lists;
+import org.spongepowered.api.text.LiteralText;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.ClickAction;
+import org.spongepowered.api.text.action.HoverAction;
+import org.spongepowered.api.text.action.ShiftClickAction;
+import org.spongepowered.api.text.format.TextFormat;
+
+import java.util.List;
+
+/**
+ * A {@link Text} compiled into literal and placeholder segments, so that it
+ * can be rendered with arguments without parsing it again.
+ *
+ * Placeholders are written as {@code {0}}, {@code {1}} and so on in the
+ * content of literal texts, and are replaced by the argument with that index.
+ * A placeholder keeps the format and actions of the text it is in; a
+ * {@link Text} argument keeps its own format on top of these.
+ *
+ * Compiling flattens the text, so each segment holds the format and actions
+ * it inherits from its parents. Literal segments are built once when the
+ * template is compiled.
+ */
+public final class MessageTemplate {
+
+    private final Text text;
+    private final Segment[] segments;
+    private final int arguments;
+
+    private MessageTemplate(Text text, Segment[] segments, int arguments) {
+        this.text = text;
+        this.segments = segments;
+        this.arguments = arguments;
+    }
+
+    /**
+     * Compiles the text into a template.
+     *
+     * @param text the text
+     * @return the template
+     */
+    public static MessageTemplate compile(Text text) {
+        List<Segment> segments = Lists.newArrayList();
+        flatten(text, TextFormat.NONE, null, null, null, segments);
+        int arguments = 0;
+        for (Segment segment : segments) {
+            if (segment.text == null) {
+                arguments = Math.max(arguments, segment.argument + 1);
+            }
+        }
+        return new MessageTemplate(text, segments.toArray(new Segment[0]), arguments);
+    }
+
+    private static void flatten(Text text, TextFormat format, ClickAction<?> click, HoverAction<?> hover, ShiftClickAction<?> shift, List<Segment> segments) {
+        format = format.merge(text.getFormat());
+        click = text.getClickAction().isPresent() ? text.getClickAction().get() : click;
+        hover = text.getHoverAction().isPresent() ? text.getHoverAction().get() : hover;
+        shift = text.getShiftClickAction().isPresent() ? text.getShiftClickAction().get() : shift;
+        if (text instanceof LiteralText) {
+            split(((LiteralText) text).getContent(), format, click, hover, shift, segments);
+        } else {
+            segments.add(new Segment(decorate(text.toBuilder().removeAll(), format, click, hover, shift).build(), -1, format, click, hover, shift));
+        }
+        for (Text child : text.getChildren()) {
+            flatten(child, format, click, hover, shift, segments);
+        }
+    }
+
+    /**
+     * Splits the content of a literal text on its placeholders. Braces that
+     * do not enclose an index are kept as literal content.
+     */
+    private static void split(String content, TextFormat format, ClickAction<?> click, HoverAction<?> hover, ShiftClickAction<?> shift, List<Segment> segments) {
+        int start = 0;
+        int open = content.indexOf('{');
+        while (open >= 0) {
+            int close = open + 1;
+            while (close < content.length() && Character.isDigit(content.charAt(close))) {
+                close++;
+            }
+            if (close > open + 1 && close < content.length() && content.charAt(close) == '}' && close - open <= 10) {
+                if (open > start) {
+                    segments.add(literal(content.substring(start, open), format, click, hover, shift));
+                }
+                segments.add(new Segment(null, Integer.parseInt(content.substring(open + 1, close)), format, click, hover, shift));
+                start = close + 1;
+            }
+            open = content.indexOf('{', open + 1);
+        }
+        if (start < content.length()) {
+            segments.add(literal(content.substring(start), format, click, hover, shift));
+        }
+    }
+
+    private static Segment literal(String content, TextFormat format, ClickAction<?> click, HoverAction<?> hover, ShiftClickAction<?> shift) {
+        return new Segment(decorate(Text.builder(content), format, click, hover, shift).build(), -1, format, click, hover, shift);
+    }
+
+    private static Text.Builder decorate(Text.Builder builder, TextFormat format, ClickAction<?> click, HoverAction<?> hover, ShiftClickAction<?> shift) {
+        builder.format(format);
+        if (click != null) {
+            builder.onClick(click);
+        }
+        if (hover != null) {
+            builder.onHover(hover);
+        }
+        if (shift != null) {
+            builder.onShiftClick(shift);
+        }
+        return builder;
+    }
+
+    /**
+     * @return the text this template was compiled from
+     */
+    public Text getText() {
+        return text;
+    }
+
+    /**
+     * @return the number of arguments, which is one more than the highest
+     *     placeholder index
+     */
+    public int getArgumentCount() {
+        return arguments;
+    }
+
+    /**
+     * Renders the template with the given arguments. Placeholders without an
+     * argument are kept as they are. If the template has no placeholders,
+     * the original text is returned.
+     *
+     * @param args the arguments
+     * @return the rendered text
+     */
+    public Text render(Object... args) {
+        if (arguments == 0) {
+            return text;
+        }
+        Text.Builder builder = Text.builder();
+        for (Segment segment : segments) {
+            builder.append(segment.render(args));
+        }
+        return builder.build();
+    }
+
+    private static final class Segment {
+
+        private final Text text;
+        private final int argument;
+        private final TextFormat format;
+        private final ClickAction<?> click;
+        private final HoverAction<?> hover;
+        private final ShiftClickAction<?> shift;
+
+        private Segment(Text text, int argument, TextFormat format, ClickAction<?> click, HoverAction<?> hover, ShiftClickAction<?> shift) {
+            this.text = text;
+            this.argument = argument;
+            this.format = format;
+            this.click = click;
+            this.hover = hover;
+            this.shift = shift;
+        }
+
+        private Text render(Object[] args) {
+            if (text != null) {
+                return text;
+            } else if (argument >= args.length) {
+                return decorate(Text.builder("{" + argument + "}"), format, click, hover, shift).build();
+            }
+            Object arg = args[argument];
+            Text value = arg instanceof Text ? (Text) arg : Text.of(String.valueOf(arg));
+            return decorate(Text.builder(), format, click, hover, shift).append(value).build();
+        }
+
+    }
+
+}
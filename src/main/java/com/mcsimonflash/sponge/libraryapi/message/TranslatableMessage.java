@@ -1,17 +1,27 @@
 package com.mcsimonflash.sponge.libraryapi.message;
 
-import com.google.common.collect.Maps;
 import org.spongepowered.api.text.Text;
 
+import java.util.Arrays;
 import java.util.Locale;
-import java.util.Map;
 
 /**
  * A series of {@link Text} objects keyed by {@link Locale}s.
+ *
+ * Each translation is compiled into a {@link MessageTemplate} when it is
+ * added, so it can be rendered with arguments without being parsed again.
+ *
+ * Translations are stored in an array indexed by the id of their locale in
+ * the {@link LocaleRegistry}, so finding a translation only reads the
+ * precomputed fallback chain of the locale and the array.
+ *
+ * Translations may be read from any thread. Lookups read an immutable
+ * snapshot of the translations without locking; changes copy the snapshot
+ * and publish the copy.
  */
 public class TranslatableMessage {
 
-    private final Map<Locale, Text> translations = Maps.newHashMap();
+    private volatile MessageTemplate[] translations = new MessageTemplate[0];
 
     public TranslatableMessage() {}
 
@@ -21,8 +31,11 @@ public class TranslatableMessage {
      * @param locale the locale of the translation
      * @param translation the text for the translation
      */
-    public void addTranslation(Locale locale, Text translation) {
-        translations.put(locale, translation);
+    public synchronized void addTranslation(Locale locale, Text translation) {
+        int id = LocaleRegistry.register(locale);
+        MessageTemplate[] copy = Arrays.copyOf(translations, Math.max(translations.length, id + 1));
+        copy[id] = MessageTemplate.compile(translation);
+        translations = copy;
     }
 
     /**
@@ -30,30 +43,81 @@ public class TranslatableMessage {
      *
      * @param locale the locale of the translation
      */
-    public void removeTranslation(Locale locale) {
-        translations.remove(locale);
+    public synchronized void removeTranslation(Locale locale) {
+        int id = LocaleRegistry.registeredId(locale);
+        if (id >= 0 && id < translations.length && translations[id] != null) {
+            MessageTemplate[] copy = translations.clone();
+            copy[id] = null;
+            translations = copy;
+        }
     }
 
     /**
      * Gets the {@link Text} translation for the given locale.
      *
-     * If the locale does not have a translation, returns the translation for
-     * the provided fallback locale. If a translation is still not found,
-     * returns a Text error message with the locale name.
+     * If the locale does not have a translation, each locale in its fallback
+     * chain is tried, such that {@code en_GB} falls back to {@code en}, and
+     * then the chain of the provided fallback locale. If a translation is
+     * still not found, returns a cached Text error message with the locale
+     * name.
+     *
+     * @see LocaleRegistry#chain(Locale)
      *
      * @param locale the locale of the translation
+     * @param fallback the locale to use if the locale has no translation
      * @return the Text translation or error message
      */
     public Text getTranslation(Locale locale, Locale fallback) {
-        Text translation = translations.get(locale);
-        if (translation != null) {
-            return translation;
-        }
-        Text fallbackTranslation = translations.get(fallback);
-        if (fallbackTranslation != null) {
-            return fallbackTranslation;
+        MessageTemplate template = getTemplate(translations, locale, fallback);
+        return template != null ? template.getText() : LocaleRegistry.missing(locale);
+    }
+
+    /**
+     * Renders the translation for the given locale with the given arguments.
+     * The translation is found the same way as in
+     * {@link #getTranslation(Locale, Locale)}.
+     *
+     * @see MessageTemplate#render(Object...)
+     *
+     * @param locale the locale of the translation
+     * @param fallback the locale to use if the locale has no translation
+     * @param args the arguments of the translation
+     * @return the rendered Text translation or error message
+     */
+    public Text render(Locale locale, Locale fallback, Object... args) {
+        MessageTemplate template = getTemplate(translations, locale, fallback);
+        return template != null ? template.render(args) : LocaleRegistry.missing(locale);
+    }
+
+    /**
+     * Returns the current snapshot of the translations. A new snapshot is
+     * published on every change, so it identifies the version of this
+     * message.
+     *
+     * @return the snapshot
+     */
+    MessageTemplate[] snapshot() {
+        return translations;
+    }
+
+    /**
+     * Finds the template for the locale in the snapshot, trying the fallback
+     * chain of the locale and then that of the fallback locale.
+     *
+     * @return the template, or null if none is found
+     */
+    static MessageTemplate getTemplate(MessageTemplate[] translations, Locale locale, Locale fallback) {
+        MessageTemplate template = find(translations, LocaleRegistry.chain(locale));
+        return template != null ? template : find(translations, LocaleRegistry.chain(fallback));
+    }
+
+    private static MessageTemplate find(MessageTemplate[] translations, int[] chain) {
+        for (int id : chain) {
+            if (id < translations.length && translations[id] != null) {
+                return translations[id];
+            }
         }
-        return Text.of("No translation for locales " + locale.toString() + " and " + fallback.toString() + ".");
+        return null;
     }
 
-}
\ No newline at end of file
+}
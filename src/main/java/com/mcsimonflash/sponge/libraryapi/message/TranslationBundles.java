@@ -0,0 +1,381 @@
+package com.mcsimonflash.sponge.libraryapi.message;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.text.serializer.TextSerializers;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Translations stored in one bundle file per locale, which are loaded in the
+ * background so that lookups never read a file on the calling thread.
+ *
+ * A bundle for a locale is named {@code name_locale.lang}, such as
+ * {@code messages_en_GB.lang}, and the bundle for {@link Locale#ROOT} is named
+ * {@code name.lang}. Each line of a bundle is a {@code key=value} pair where
+ * the value uses {@code &} formatting codes and may contain placeholders
+ * such as {@code {0}}. Blank lines and lines starting with {@code #} are
+ * ignored.
+ *
+ * Bundles are read into memory on a shared background thread and compiled
+ * into {@link MessageTemplate}s; the file is closed once read, so it can be
+ * edited or replaced while the bundle is loaded. Every bundle in the
+ * directory is loaded when this is created. A lookup in a bundle which is not
+ * loaded, such as one evicted since, starts loading it and finds no
+ * translation, so the next locale in the fallback chain is used until the
+ * bundle is loaded; see {@link #preload(Locale)} to load a bundle ahead of
+ * time.
+ *
+ * Loaded bundles are evicted once they have not been used for the idle time,
+ * or when the total size of loaded bundles exceeds the budget, least recently
+ * used first. The size of a bundle is estimated
+ * by the size of its file. The cache uses a single segment, as the budget is
+ * otherwise split between segments and a large bundle could be evicted while
+ * the total is well under the budget.
+ *
+ * The locales of the bundle files in the directory are registered with the
+ * {@link LocaleRegistry} when this is created, and those of bundle files
+ * created later once they are seen by the watcher, so that the bundles are
+ * part of the fallback chains of player locales.
+ *
+ * Once {@link #watch()} is called, the directory is watched for changes to
+ * bundle files. A changed bundle that is loaded is read again on the watching
+ * thread and replaces the old bundle in a single put, so readers see either
+ * the old or the new bundle and never wait for the read. If a bundle cannot be
+ * read, the old bundle is kept.
+ *
+ * @see MessageService#setBundles(TranslationBundles)
+ */
+public class TranslationBundles implements Closeable {
+
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "LibraryAPI translation bundle loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final String name;
+    private final Cache<Locale, Bundle> bundles;
+    private final Set<Locale> loading = Sets.newConcurrentHashSet();
+    private WatchService watcher;
+
+    /**
+     * Creates a new instance for the bundles in the given directory.
+     *
+     * @param directory the directory holding the bundles
+     * @param name the base name of the bundle files
+     * @param maxBytes the total size of bundles to keep loaded
+     * @param idle the time after which an unused bundle is evicted
+     * @param unit the unit of the idle time
+     */
+    public TranslationBundles(Path directory, String name, long maxBytes, long idle, TimeUnit unit) {
+        this.directory = directory;
+        this.name = name;
+        this.bundles = CacheBuilder.newBuilder()
+                .concurrencyLevel(1)
+                .maximumWeight(maxBytes)
+                .weigher((Locale locale, Bundle bundle) -> bundle.weight)
+                .expireAfterAccess(idle, unit)
+                .build();
+        registerLocales();
+    }
+
+    /**
+     * Registers the locales of the bundle files in the directory and starts
+     * loading the bundles.
+     */
+    private void registerLocales() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Locale locale = getLocale(file.getFileName().toString());
+                if (locale != null) {
+                    LocaleRegistry.register(locale);
+                    preload(locale);
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Gets the template for the key in the bundle of the locale. If the bundle
+     * is not loaded, it starts loading in the background and null is
+     * returned. The fallback chain of the locale is not used; see
+     * {@link LocaleRegistry#chain(Locale)} and
+     * {@link MessageService#getMessage(String, Locale)}.
+     *
+     * @param locale the locale of the bundle
+     * @param key the key of the translation
+     * @return the template, or null if the bundle is not loaded, has no such
+     *     key or could not be read
+     */
+    public MessageTemplate getTemplate(Locale locale, String key) {
+        Bundle bundle = bundles.getIfPresent(locale);
+        if (bundle == null) {
+            preload(locale);
+            return null;
+        }
+        return bundle.templates.get(key);
+    }
+
+    /**
+     * Starts loading the bundle of the locale in the background, unless it is
+     * loaded or already loading. If the bundle cannot be read, it is loaded
+     * again on its next use.
+     *
+     * @param locale the locale
+     */
+    public void preload(Locale locale) {
+        if (bundles.getIfPresent(locale) != null || !loading.add(locale)) {
+            return;
+        }
+        LOADER.execute(() -> {
+            try {
+                bundles.put(locale, read(getPath(locale)));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            } finally {
+                loading.remove(locale);
+            }
+        });
+    }
+
+    /**
+     * @param locale the locale
+     * @return whether the bundle of the locale is loaded
+     */
+    public boolean isLoaded(Locale locale) {
+        return bundles.getIfPresent(locale) != null;
+    }
+
+    /**
+     * Unloads the bundle of the locale, so it is loaded again when next used.
+     *
+     * @param locale the locale
+     */
+    public void unload(Locale locale) {
+        bundles.invalidate(locale);
+    }
+
+    /**
+     * Unloads every bundle.
+     */
+    public void unloadAll() {
+        bundles.invalidateAll();
+    }
+
+    /**
+     * Starts a daemon thread watching the directory for changed bundles. Does
+     * nothing if the directory is already watched.
+     *
+     * @throws IOException if the directory could not be watched
+     */
+    public synchronized void watch() throws IOException {
+        if (watcher != null) {
+            return;
+        }
+        watcher = directory.getFileSystem().newWatchService();
+        directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        WatchService watcher = this.watcher;
+        Thread thread = new Thread(() -> run(watcher), "LibraryAPI translation bundle watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Registers a listener closing this when the server is stopping.
+     *
+     * @param plugin the plugin registering the listener
+     */
+    public void closeOnShutdown(Object plugin) {
+        Sponge.getEventManager().registerListener(plugin, GameStoppingServerEvent.class, event -> {
+            try {
+                close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Stops watching the directory.
+     *
+     * @throws IOException if the watch service could not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (watcher != null) {
+            watcher.close();
+            watcher = null;
+        }
+    }
+
+    /**
+     * The loop run by the watching thread. Events arriving within a short
+     * delay of each other are handled together, so a file written in several
+     * steps is only read once.
+     */
+    private void run(WatchService watcher) {
+        try {
+            while (true) {
+                WatchKey key = watcher.take();
+                Thread.sleep(100);
+                Set<Locale> changed = Sets.newHashSet();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.context() instanceof Path) {
+                        Locale locale = getLocale(((Path) event.context()).getFileName().toString());
+                        if (locale != null) {
+                            changed.add(locale);
+                        }
+                    }
+                }
+                key.reset();
+                for (Locale locale : changed) {
+                    LocaleRegistry.register(locale);
+                    reload(locale);
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ignored) {}
+    }
+
+    /**
+     * Reads the bundle of the locale again if it is loaded and replaces the
+     * loaded bundle. Bundles that are not loaded are loaded when next used.
+     *
+     * @param locale the locale
+     */
+    public void reload(Locale locale) {
+        if (bundles.getIfPresent(locale) != null) {
+            try {
+                bundles.put(locale, read(getPath(locale)));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Returns the locale of a bundle file name, the reverse of
+     * {@link #getPath(Locale)}.
+     *
+     * @param file the name of the file
+     * @return the locale, or null if the file is not a bundle
+     */
+    private Locale getLocale(String file) {
+        if (!file.startsWith(name) || !file.endsWith(".lang")) {
+            return null;
+        }
+        String tag = file.substring(name.length(), file.length() - 5);
+        if (tag.isEmpty()) {
+            return Locale.ROOT;
+        } else if (tag.charAt(0) != '_') {
+            return null;
+        }
+        String[] parts = tag.substring(1).split("_", 3);
+        return new Locale(parts[0], parts.length > 1 ? parts[1] : "", parts.length > 2 ? parts[2] : "");
+    }
+
+    /**
+     * @param locale the locale
+     * @return the path of the bundle file for the locale
+     */
+    public Path getPath(Locale locale) {
+        return directory.resolve(locale.toString().isEmpty() ? name + ".lang" : name + "_" + locale + ".lang");
+    }
+
+    /**
+     * Reads and compiles the bundle at the path. A missing bundle is empty,
+     * so that it is not looked up again until evicted.
+     *
+     * @param path the path of the bundle
+     * @return the bundle
+     * @throws IOException if the bundle could not be read
+     */
+    static Bundle read(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return new Bundle(ImmutableMap.of(), 0);
+        }
+        byte[] bytes = Files.readAllBytes(path);
+        CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(ByteBuffer.wrap(bytes));
+        ImmutableMap.Builder<String, MessageTemplate> builder = ImmutableMap.builder();
+        Map<String, String> values = parse(chars);
+        for (Map.Entry<String, String> entry : values.entrySet()) {
+            builder.put(entry.getKey(), MessageTemplate.compile(TextSerializers.FORMATTING_CODE.deserialize(entry.getValue())));
+        }
+        return new Bundle(builder.build(), bytes.length);
+    }
+
+    /**
+     * Parses the {@code key=value} lines of a bundle. Later lines replace
+     * earlier lines with the same key.
+     */
+    private static Map<String, String> parse(CharBuffer chars) {
+        Map<String, String> values = Maps.newLinkedHashMap();
+        int length = chars.length();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && chars.charAt(end) != '\n') {
+                end++;
+            }
+            String line = chars.subSequence(start, end).toString().trim();
+            start = end + 1;
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            int equals = line.indexOf('=');
+            if (equals > 0) {
+                values.put(line.substring(0, equals).trim(), line.substring(equals + 1).trim());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * The compiled templates of a bundle and its estimated size.
+     */
+    static final class Bundle {
+
+        private final Map<String, MessageTemplate> templates;
+        private final int weight;
+
+        private Bundle(Map<String, MessageTemplate> templates, int weight) {
+            this.templates = templates;
+            this.weight = weight;
+        }
+
+    }
+
+}